@@ -0,0 +1,56 @@
+package com.lina.finance_tracker_bot.bot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор ввода "категория сумма" из MessageHandler:
+ * split по пробелам, проверка числа и Double.parseDouble
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AmountInputBenchmark {
+
+    // Типичные сообщения: сумма первой и второй, копейки через запятую, ошибки ввода
+    private static final String[] INPUTS = {
+            "Еда 500",
+            "1500,50 Кафе",
+            "  Зарплата   120000 ",
+            "такси",
+            "Продукты на неделю 3200",
+            "Подарок много",
+    };
+
+    private int next;
+
+    @Benchmark
+    public MessageHandler.AmountInput mixedInput() {
+        String input = INPUTS[next];
+        next = (next + 1) % INPUTS.length;
+        return MessageHandler.parseAmountInput(input);
+    }
+
+    @Benchmark
+    public MessageHandler.AmountInput amountFirst() {
+        return MessageHandler.parseAmountInput("1500,50 Кафе");
+    }
+
+    // Худший случай: оба поля не числа, два исключения NumberFormatException
+    @Benchmark
+    public MessageHandler.AmountInput noNumber() {
+        return MessageHandler.parseAmountInput("Подарок много");
+    }
+}
@@ -0,0 +1,67 @@
+package com.lina.finance_tracker_bot.bot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Постановка сообщений в очередь удаления при разной глубине очереди.
+ * Каждая итерация — пачка из BATCH вызовов на свежей очереди (worker не запущен, БД не нужна),
+ * чтобы очередь и несохранённое расписание не росли бесконечно.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = MessageDeletionBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = MessageDeletionBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageDeletionBenchmark {
+
+    static final int BATCH = 10_000;
+
+    // Сколько сообщений уже ждут удаления
+    @Param({"1000", "100000"})
+    private int queueDepth;
+
+    private MessageDeletion messageDeletion;
+    private SplittableRandom random;
+    private int messageId;
+
+    @Setup(Level.Iteration)
+    public void fillQueue() {
+        messageDeletion = new MessageDeletion(null, new SimpleMeterRegistry());
+        random = new SplittableRandom(42);
+        for (messageId = 0; messageId < queueDepth; messageId++) {
+            schedule();
+        }
+    }
+
+    @Benchmark
+    public void scheduleForDeletion() {
+        messageId++;
+        schedule();
+    }
+
+    // TTL как в MessageSender: от пары минут до суток
+    private void schedule() {
+        long ttl = switch (random.nextInt(3)) {
+            case 0 -> MessageSender.NOTIFICATION_CREATED_TTL;
+            case 1 -> MessageSender.REMINDER_TTL;
+            default -> MessageSender.DEFAULT_TTL;
+        };
+        messageDeletion.scheduleMessageForDeletion((long) random.nextInt(10_000), messageId, ttl);
+    }
+}
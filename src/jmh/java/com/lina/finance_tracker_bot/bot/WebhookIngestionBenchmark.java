@@ -0,0 +1,412 @@
+package com.lina.finance_tracker_bot.bot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Задержка от появления обновления в Telegram до запуска обработчика в полосе UpdateDispatcher,
+ * через HTTP на локальной заглушке Telegram.
+ *
+ * webhook — заглушка отправляет POST с обновлением на HTTP-точку приложения, где его принимает
+ * настоящий {@link TelegramWebhookController}: проверка секрета, очередь {@link WebhookUpdateReceiver},
+ * 503 при переполнении (тогда заглушка повторяет запрос, как Telegram).
+ * webhookBurst — пачка из BURST обновлений сразу при маленьких очередях и медленном обработчике:
+ * часть запросов получает 503 и приходит повторно; время — до обработки всей пачки.
+ * polling — поток приложения запрашивает getUpdates у заглушки, как DefaultBotSession,
+ * с паузой pollIntervalMs между запросами (0 — long polling без паузы, иначе короткий опрос).
+ * oneWayMs — задержка сети в одну сторону, добавляется к каждому запросу и ответу в обоих режимах.
+ *
+ * HTTP-точка приложения поднята на JDK HttpServer, а не на Tomcat, чтобы не запускать Spring:
+ * разбор JSON в Update, заголовок секрета и код ответа контроллера те же.
+ *
+ * Запуск: ./gradlew jmh -Pjmh.includes=WebhookIngestionBenchmark (результаты в build/results/jmh)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookIngestionBenchmark {
+
+    private static final String TOKEN = "123456:benchmark";
+    private static final String SECRET = "benchmark-secret";
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final String WEBHOOK_PATH = "/telegram/webhook";
+    // Через сколько заглушка повторяет запрос, получив 503
+    private static final long RETRY_DELAY_MS = 50;
+    static final int BURST = 50;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @State(Scope.Benchmark)
+    public static class WebhookSide {
+
+        @Param({"0", "20"})
+        public long oneWayMs;
+
+        Pipeline pipeline;
+        FakeTelegram telegram;
+        WebhookApp app;
+
+        @Setup
+        public void start() throws IOException {
+            pipeline = new Pipeline(100, 0);
+            telegram = new FakeTelegram(oneWayMs);
+            app = new WebhookApp(pipeline, 1000);
+        }
+
+        @TearDown
+        public void stop() {
+            telegram.stop();
+            app.stop();
+            pipeline.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class WebhookBurstSide {
+
+        Pipeline pipeline;
+        FakeTelegram telegram;
+        WebhookApp app;
+
+        @Setup
+        public void start() throws IOException {
+            // полоса на 4 обновления и обработка по 1 мс: поток приёма упирается в полосу,
+            // очередь приёма на 10 обновлений переполняется, и контроллер отвечает 503
+            pipeline = new Pipeline(4, 1);
+            telegram = new FakeTelegram(0);
+            app = new WebhookApp(pipeline, 10);
+        }
+
+        @TearDown
+        public void stop() {
+            System.out.println("webhookBurst: ответов 503 — " + app.receiver.getRejectedCount() +
+                    ", повторов заглушки — " + telegram.getRetried());
+            telegram.stop();
+            app.stop();
+            pipeline.stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PollingSide {
+
+        @Param({"0", "20"})
+        public long oneWayMs;
+
+        // Пауза между запросами getUpdates
+        @Param({"0", "500"})
+        public long pollIntervalMs;
+
+        Pipeline pipeline;
+        FakeTelegram telegram;
+        private Thread poller;
+        private volatile boolean running;
+
+        @Setup
+        public void start() throws IOException {
+            pipeline = new Pipeline(100, 0);
+            telegram = new FakeTelegram(oneWayMs);
+            running = true;
+            poller = new Thread(this::poll, "benchmark-polling");
+            poller.setDaemon(true);
+            poller.start();
+        }
+
+        // цикл DefaultBotSession: getUpdates, разбор ответа, обновления в полосы
+        private void poll() {
+            HttpClient client = HttpClient.newHttpClient();
+            // с паузой — короткий опрос, без паузы — ожидание обновлений на стороне Telegram
+            int timeout = pollIntervalMs > 0 ? 0 : 1;
+            long offset = 0;
+            while (running) {
+                try {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(telegram.baseUrl() +
+                            "/getUpdates?offset=" + offset + "&timeout=" + timeout)).GET().build();
+                    String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+                    ApiResponse<ArrayList<Update>> response = OBJECT_MAPPER.readValue(body,
+                            new TypeReference<ApiResponse<ArrayList<Update>>>() {});
+                    for (Update update : response.getResult()) {
+                        offset = update.getUpdateId() + 1;
+                        pipeline.dispatch(update);
+                    }
+                    TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Ошибка getUpdates: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        @TearDown
+        public void stop() throws InterruptedException {
+            running = false;
+            poller.interrupt();
+            poller.join(3000);
+            telegram.stop();
+            pipeline.stop();
+        }
+    }
+
+    @Benchmark
+    public void webhook(WebhookSide side) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        side.telegram.deliver(side.app.endpoint, side.pipeline.nextUpdate(latch));
+        await(latch);
+    }
+
+    @Benchmark
+    public void webhookBurst(WebhookBurstSide side) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            side.telegram.deliver(side.app.endpoint, side.pipeline.nextUpdate(latch));
+        }
+        await(latch);
+    }
+
+    @Benchmark
+    public void polling(PollingSide side) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        side.telegram.publish(side.pipeline.nextUpdate(latch));
+        await(latch);
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Обновление не дошло до обработчика за 10 секунд");
+        }
+    }
+
+    /**
+     * Полосы обработки и ожидание обработки конкретных обновлений
+     */
+    static final class Pipeline {
+
+        private final UpdateDispatcher dispatcher;
+        private final long handlerMs;
+        private final AtomicInteger nextUpdateId = new AtomicInteger();
+        private final Map<Integer, CountDownLatch> pending = new ConcurrentHashMap<>();
+
+        /**
+         * @param laneCapacity длина очереди полосы
+         * @param handlerMs время обработки одного обновления
+         */
+        Pipeline(int laneCapacity, long handlerMs) {
+            this.dispatcher = new UpdateDispatcher(8, laneCapacity);
+            this.handlerMs = handlerMs;
+        }
+
+        /**
+         * Новое обновление от пользователя
+         * @param latch отсчитывается, когда обработчик обновления запущен
+         * @return JSON обновления, как его отдаёт Telegram
+         */
+        String nextUpdate(CountDownLatch latch) {
+            int updateId = nextUpdateId.incrementAndGet();
+            pending.put(updateId, latch);
+            return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId +
+                    ",\"date\":1700000000,\"chat\":{\"id\":42,\"type\":\"private\"}," +
+                    "\"from\":{\"id\":42,\"is_bot\":false,\"first_name\":\"Тест\"},\"text\":\"/start\"}}";
+        }
+
+        // как FinanceTrackerBot.onUpdateReceived: обновление уходит в полосу своего чата
+        void dispatch(Update update) {
+            dispatcher.dispatch(update.getMessage().getChatId(), () -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(handlerMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                CountDownLatch latch = pending.remove(update.getUpdateId());
+                if (latch != null) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        void stop() {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Сторона приложения в режиме webhook: HTTP-точка перед TelegramWebhookController
+     */
+    static final class WebhookApp {
+
+        final WebhookUpdateReceiver receiver;
+        final URI endpoint;
+        private final TelegramWebhookController controller;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+        WebhookApp(Pipeline pipeline, int queueCapacity) throws IOException {
+            this.receiver = new WebhookUpdateReceiver(pipeline::dispatch, queueCapacity);
+            this.controller = new TelegramWebhookController(receiver, SECRET);
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            this.server.createContext(WEBHOOK_PATH, this::receive);
+            this.server.setExecutor(executor);
+            this.server.start();
+            this.endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + WEBHOOK_PATH);
+        }
+
+        // то, что делает Spring MVC вокруг контроллера: заголовок, тело в Update, код ответа
+        private void receive(HttpExchange exchange) throws IOException {
+            int status;
+            try (InputStream body = exchange.getRequestBody()) {
+                Update update = OBJECT_MAPPER.readValue(body, Update.class);
+                status = controller.receive(exchange.getRequestHeaders().getFirst(SECRET_HEADER), update)
+                        .getStatusCode().value();
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+            receiver.shutdown();
+        }
+    }
+
+    /**
+     * Заглушка Telegram: getUpdates с ожиданием и доставка обновлений на webhook с повтором после 503.
+     * Выданные через getUpdates обновления сразу снимаются с очереди, поэтому offset не учитывается.
+     */
+    static final class FakeTelegram {
+
+        private final long oneWayMs;
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final HttpClient client = HttpClient.newBuilder().executor(executor).build();
+        private final BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+        private final AtomicLong retried = new AtomicLong();
+
+        FakeTelegram(long oneWayMs) throws IOException {
+            this.oneWayMs = oneWayMs;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            this.server.createContext("/bot" + TOKEN + "/getUpdates", this::getUpdates);
+            this.server.setExecutor(executor);
+            this.server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot" + TOKEN;
+        }
+
+        /**
+         * Обновление появилось в Telegram и ждёт getUpdates
+         */
+        void publish(String update) {
+            updates.add(update);
+        }
+
+        /**
+         * Отправляет обновление на webhook; на 503 повторяет через RETRY_DELAY_MS
+         */
+        void deliver(URI webhook, String update) {
+            HttpRequest request = HttpRequest.newBuilder(webhook)
+                    .header("Content-Type", "application/json")
+                    .header(SECRET_HEADER, SECRET)
+                    .POST(HttpRequest.BodyPublishers.ofString(update, StandardCharsets.UTF_8))
+                    .build();
+            executor.execute(() -> {
+                try {
+                    while (true) {
+                        TimeUnit.MILLISECONDS.sleep(oneWayMs);
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) {
+                            return;
+                        }
+                        if (status != 503) {
+                            System.err.println("Webhook ответил " + status);
+                            return;
+                        }
+                        retried.incrementAndGet();
+                        TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    System.err.println("Ошибка доставки на webhook: " + e.getMessage());
+                }
+            });
+        }
+
+        private void getUpdates(HttpExchange exchange) throws IOException {
+            String query = exchange.getRequestURI().getQuery();
+            int timeout = query != null && query.contains("timeout=")
+                    ? Integer.parseInt(query.substring(query.indexOf("timeout=") + "timeout=".length()).split("&")[0])
+                    : 0;
+            List<String> batch = new ArrayList<>();
+            try {
+                TimeUnit.MILLISECONDS.sleep(oneWayMs); // запрос идёт по сети
+                String first = updates.poll(timeout, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    updates.drainTo(batch, 99);
+                }
+                TimeUnit.MILLISECONDS.sleep(oneWayMs); // ответ идёт по сети
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = ("{\"ok\":true,\"result\":[" + String.join(",", batch) + "]}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        long getRetried() {
+            return retried.get();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
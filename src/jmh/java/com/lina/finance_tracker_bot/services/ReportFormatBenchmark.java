@@ -0,0 +1,64 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.CategoryTotal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка текста отчёта ReportService.formatReport.
+ * На вход подаются строки итогов (тип, категория, сумма, количество) —
+ * то, что возвращают агрегирующие запросы; rows — число таких строк.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ReportFormatBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int rows;
+
+    // Сколько различных категорий среди строк (остальные строки — повторы, которые нужно слить)
+    @Param({"20", "1000"})
+    private int categories;
+
+    // Сколько крупнейших категорий выводится (0 — все, с полной сортировкой)
+    @Param({"15", "0"})
+    private int top;
+
+    private List<CategoryTotal> totals;
+
+    @Setup
+    public void generate() {
+        SplittableRandom random = new SplittableRandom(42);
+        totals = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            TransactionType type = random.nextInt(4) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+            String category = "категория" + random.nextInt(categories);
+            long totalMinor = random.nextLong(1_000, 5_000_000);
+            totals.add(new CategoryTotal(type, category, totalMinor, 1L + random.nextInt(30)));
+        }
+    }
+
+    @Benchmark
+    public String formatReport() {
+        return ReportService.formatReport(totals, "все время", top);
+    }
+}
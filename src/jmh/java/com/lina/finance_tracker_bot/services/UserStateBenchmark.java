@@ -0,0 +1,87 @@
+package com.lina.finance_tracker_bot.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверки состояния диалога, которые MessageHandler делает на каждое сообщение,
+ * при большом количестве одновременно активных чатов и параллельных потоках обработки
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class UserStateBenchmark {
+
+    // Количество чатов с активным состоянием
+    @Param({"10000"})
+    private int activeChats;
+
+    private UserStateService userStateService;
+
+    @Setup
+    public void fillStates() {
+        userStateService = new UserStateService();
+        for (long chatId = 0; chatId < activeChats; chatId++) {
+            switch ((int) (chatId % 4)) {
+                case 0 -> userStateService.setState(chatId, "add_expense");
+                case 1 -> userStateService.setState(chatId, "add_income");
+                case 2 -> userStateService.setAwaitingCategoryDeletion(chatId);
+                default -> userStateService.setAwaitingNotificationDeletion(chatId);
+            }
+        }
+    }
+
+    @TearDown
+    public void shutdown() {
+        userStateService.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class Chats {
+        private final SplittableRandom random = new SplittableRandom();
+
+        // Половина обращений — к чатам без состояния
+        Long next(int activeChats) {
+            return (long) random.nextInt(activeChats * 2);
+        }
+    }
+
+    // Последовательность проверок из MessageHandler.handleMessage
+    @Benchmark
+    public String handleMessageLookups(Chats chats) {
+        Long chatId = chats.next(activeChats);
+        if (userStateService.isAwaitingCategoryDeletion(chatId)) {
+            return "category";
+        }
+        if (userStateService.isAwaitingNotificationDeletion(chatId)) {
+            return "notification";
+        }
+        return userStateService.hasState(chatId) ? userStateService.getState(chatId) : null;
+    }
+
+    // Начало и конец диалога: setState при нажатии кнопки, clearState после ввода
+    @Benchmark
+    public void setAndClearState(Chats chats) {
+        Long chatId = activeChats + chats.next(activeChats);
+        userStateService.setState(chatId, "add_expense");
+        userStateService.clearState(chatId);
+    }
+}
@@ -21,6 +21,7 @@ public class FinanceTrackerBot extends TelegramLongPollingBot {
     private final NotificationService notificationService;
     private final MessageDeletion messageDeletion;
     private final MessageSender messageSender;
+    private final UpdateDispatcher updateDispatcher;
 
     /**
      * Конструктор бота
@@ -29,17 +30,20 @@ public class FinanceTrackerBot extends TelegramLongPollingBot {
      * @param notificationService сервис уведомлений
      * @param messageDeletion сервис удаления сообщений
      * @param messageSender сервис отправки сообщений
+     * @param updateDispatcher распределитель обработки обновлений по чатам
      */
     public FinanceTrackerBot(@Value("${bot.token}") String botToken,
                              MessageHandler messageHandler,
                              NotificationService notificationService,
                              MessageDeletion messageDeletion,
-                             MessageSender messageSender) {
+                             MessageSender messageSender,
+                             UpdateDispatcher updateDispatcher) {
         super(botToken);
         this.messageHandler = messageHandler;
         this.notificationService = notificationService;
         this.messageDeletion = messageDeletion;
         this.messageSender = messageSender;
+        this.updateDispatcher = updateDispatcher;
     }
 
     /**
@@ -61,7 +65,8 @@ public class FinanceTrackerBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Обрабатывает входящие обновления от Telegram
+     * Принимает входящие обновления от Telegram и передаёт их в полосу чата.
+     * Поток long polling не ждёт обработки и сразу забирает следующие обновления.
      * @param update объект обновления от Telegram API
      */
     @Override
@@ -71,12 +76,18 @@ public class FinanceTrackerBot extends TelegramLongPollingBot {
                 String messageText = update.getMessage().getText();
                 Long chatId = update.getMessage().getChatId();
                 String username = update.getMessage().getFrom().getUserName();
-                messageHandler.handleMessage(chatId, messageText, username);
+                updateDispatcher.dispatch(chatId, () -> messageHandler.handleMessage(chatId, messageText, username));
+            } else if (update.hasMessage() && update.getMessage().hasDocument()) {
+                Long chatId = update.getMessage().getChatId();
+                String fileId = update.getMessage().getDocument().getFileId();
+                String fileName = update.getMessage().getDocument().getFileName();
+                String username = update.getMessage().getFrom().getUserName();
+                updateDispatcher.dispatch(chatId, () -> messageHandler.handleDocument(chatId, fileId, fileName, username));
             } else if (update.hasCallbackQuery()) {
                 String data = update.getCallbackQuery().getData();
                 Long chatId = update.getCallbackQuery().getMessage().getChatId();
                 String username = update.getCallbackQuery().getFrom().getUserName();
-                messageHandler.handleCallback(chatId, data, username);
+                updateDispatcher.dispatch(chatId, () -> messageHandler.handleCallback(chatId, data, username));
             }
         } catch (Exception e) {
             System.err.println("Ошибка в onUpdateReceived: " + e.getMessage());
@@ -97,6 +108,8 @@ public class FinanceTrackerBot extends TelegramLongPollingBot {
      */
     @PreDestroy
     public void destroy() {
+        updateDispatcher.shutdown();
+        messageSender.shutdown();
         messageDeletion.shutdown();
     }
 }
\ No newline at end of file
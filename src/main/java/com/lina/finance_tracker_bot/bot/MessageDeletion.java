@@ -1,30 +1,84 @@
 package com.lina.finance_tracker_bot.bot;
 
+import com.lina.finance_tracker_bot.modelSqlLite.ScheduledDeletion;
+import com.lina.finance_tracker_bot.repository.ScheduledDeletionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
- * Сервис для управления автоматическим удалением сообщений
+ * Сервис для управления автоматическим удалением сообщений.
+ * Сообщения упорядочены по времени удаления (а не по времени отправки),
+ * поэтому короткий TTL не ждёт длинный; worker спит до ближайшего срока.
+ * Расписание сохраняется в таблицу scheduled_deletions пачками (вставка с обновлением срока,
+ * поэтому повтор ключа не ломает пачку) и
+ * восстанавливается при старте, просроченные сообщения удаляются с ограничением скорости.
  */
 @Service
 public class MessageDeletion {
 
+    // Как часто пачка изменений расписания записывается в БД
+    private static final long FLUSH_INTERVAL_MS = 2000;
+    // Пауза между удалениями просроченных сообщений (догоняющий режим после рестарта)
+    private static final long CATCH_UP_INTERVAL_MS = 100;
+    // Опоздание, начиная с которого удаление считается догоняющим
+    private static final long CATCH_UP_LATENESS_MS = 1000;
+    // Сколько сбросов подряд пробовать записать строку расписания, прежде чем отказаться от неё
+    private static final int MAX_WRITE_ATTEMPTS = 5;
+    // Telegram не даёт удалять сообщения старше 48 часов
+    private static final long MAX_DELETABLE_AGE_MS = TimeUnit.HOURS.toMillis(48);
+
     private TelegramLongPollingBot bot;
-    private final ConcurrentLinkedQueue<MessageToDelete> eraseQueue = new ConcurrentLinkedQueue<>();
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ScheduledDeletionRepository scheduledDeletionRepository;
+    private final MeterRegistry meterRegistry;
+    private final DelayQueue<MessageToDelete> eraseQueue = new DelayQueue<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicBoolean workerStarted = new AtomicBoolean();
+
+    // Изменения расписания, ещё не записанные в БД
+    private final ConcurrentLinkedQueue<ScheduledDeletion> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> pendingRemovals = new ConcurrentLinkedQueue<>();
+    // Неудачные попытки записи по ключу; меняются только при сбросе
+    private final Map<String, Integer> insertFailures = new HashMap<>();
+    private final Map<String, Integer> removalFailures = new HashMap<>();
+    private long lastCatchUpDeletion;
 
-    public MessageDeletion() {
+    // Метрики: сколько удалено и насколько позже срока
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong totalLatenessMs = new AtomicLong();
+    private final AtomicLong maxLatenessMs = new AtomicLong();
+
+    public MessageDeletion(ScheduledDeletionRepository scheduledDeletionRepository, MeterRegistry meterRegistry) {
+        this.scheduledDeletionRepository = scheduledDeletionRepository;
+        this.meterRegistry = meterRegistry;
     }
 
     /**
-     * Устанавливает экземпляр бота для отправки запросов
+     * Устанавливает экземпляр бота для отправки запросов,
+     * восстанавливает сохранённое расписание и запускает worker
      * @param bot экземпляр Telegram бота
      */
     public void setTelegramBot(TelegramLongPollingBot bot) {
@@ -40,7 +94,9 @@ public class MessageDeletion {
      */
     public void scheduleMessageForDeletion(Long chatId, Integer messageId, Long ttlSeconds) {
         if (ttlSeconds > 0) {
-            eraseQueue.add(new MessageToDelete(chatId, messageId, System.currentTimeMillis() / 1000, ttlSeconds));
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds);
+            eraseQueue.add(new MessageToDelete(chatId, messageId, deadline));
+            pendingInserts.add(new ScheduledDeletion(chatId, messageId, deadline));
         }
     }
 
@@ -55,66 +111,207 @@ public class MessageDeletion {
             System.err.println("Ошибка: TelegramBot не установлен");
             return;
         }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
         try {
             DeleteMessage deleteMessage = new DeleteMessage();
             deleteMessage.setChatId(chatId.toString());
             deleteMessage.setMessageId(messageId);
             bot.execute(deleteMessage);
+            outcome = "success";
         } catch (TelegramApiException e) {
             System.err.println("Ошибка удаления сообщения: " + e.getMessage());
+        } finally {
+            sample.stop(meterRegistry.timer("bot.telegram.api", "method", "deleteMessage", "outcome", outcome));
         }
     }
 
+    /**
+     * @return количество сообщений, ожидающих удаления
+     */
+    public int getQueueDepth() {
+        return eraseQueue.size();
+    }
+
+    /**
+     * @return количество сообщений, удалённых по TTL
+     */
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * @return максимальное опоздание удаления относительно срока, мс
+     */
+    public long getMaxLatenessMs() {
+        return maxLatenessMs.get();
+    }
+
+    /**
+     * @return среднее опоздание удаления относительно срока, мс
+     */
+    public double getAverageLatenessMs() {
+        long count = deletedCount.get();
+        return count == 0 ? 0 : (double) totalLatenessMs.get() / count;
+    }
+
     private void startMessageDeletionWorker() {
-        if (!scheduler.isShutdown()) {
-            scheduler.scheduleAtFixedRate(() -> {
-                try {
-                    processMessageDeletion();
-                } catch (Exception e) {
-                    System.err.println("Ошибка в worker удаления сообщений: " + e.getMessage());
-                }
-            }, 10, 10, TimeUnit.SECONDS);
+        if (!worker.isShutdown() && workerStarted.compareAndSet(false, true)) {
+            restoreSchedule();
+            worker.submit(this::processMessageDeletion);
+            flushScheduler.scheduleWithFixedDelay(this::flushSafely,
+                    FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void processMessageDeletion() {
-        if (bot == null) return;
+    /**
+     * Загружает расписание удалений, сохранённое до перезапуска
+     */
+    private void restoreSchedule() {
+        try {
+            List<ScheduledDeletion> saved = scheduledDeletionRepository.findAll();
+            for (ScheduledDeletion d : saved) {
+                eraseQueue.add(new MessageToDelete(d.getChatId(), d.getMessageId(), d.getDeadline()));
+            }
+            if (!saved.isEmpty()) {
+                System.out.println("🗑 Восстановлено запланированных удалений: " + saved.size());
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка восстановления расписания удалений: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения расписания в БД пачками.
+     * Вставки и удаления пишутся независимо: ошибка одной пачки не задерживает другую
+     */
+    private void flushPendingChanges() {
+        List<ScheduledDeletion> inserts = drain(pendingInserts);
+        Set<String> removals = new LinkedHashSet<>(drain(pendingRemovals));
+        // сообщение удалено раньше, чем записалась его строка: вставлять её уже незачем
+        inserts.removeIf(insert -> removals.contains(insert.getId()));
 
-        long currentTime = System.currentTimeMillis() / 1000;
+        if (!inserts.isEmpty()) {
+            writeBatch(inserts, scheduledDeletionRepository::upsertAll, ScheduledDeletion::getId,
+                    pendingInserts, insertFailures, "записи");
+        }
+        if (!removals.isEmpty()) {
+            writeBatch(new ArrayList<>(removals), scheduledDeletionRepository::deleteAllByIdInBatch, id -> id,
+                    pendingRemovals, removalFailures, "удаления записи");
+        }
+    }
 
-        while (!eraseQueue.isEmpty()) {
-            MessageToDelete message = eraseQueue.peek();
+    /**
+     * Пишет пачку одним вызовом; если он не прошёл, пробует строки по одной.
+     * Не записавшаяся строка возвращается в очередь до следующего сброса, а после
+     * MAX_WRITE_ATTEMPTS неудач отбрасывается, чтобы одна плохая строка не повторялась вечно
+     */
+    private <T> void writeBatch(List<T> batch, Consumer<List<T>> write, Function<T, String> key,
+                                Queue<T> retryQueue, Map<String, Integer> failures, String action) {
+        try {
+            write.accept(batch);
+            if (!failures.isEmpty()) {
+                batch.forEach(item -> failures.remove(key.apply(item)));
+            }
+            return;
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка пачки расписания удалений (" + action + "), пробую по одной: " + e.getMessage());
+        }
 
-            if (message == null) {
-                eraseQueue.poll();
-                continue;
+        for (T item : batch) {
+            String id = key.apply(item);
+            try {
+                write.accept(List.of(item));
+                failures.remove(id);
+            } catch (RuntimeException e) {
+                int attempts = failures.merge(id, 1, Integer::sum);
+                if (attempts < MAX_WRITE_ATTEMPTS) {
+                    retryQueue.add(item);
+                } else {
+                    failures.remove(id);
+                    System.err.println("Отказ от " + action + " " + id + " после " + attempts + " попыток: " + e.getMessage());
+                }
             }
+        }
+    }
 
-            long deleteTime = message.sentDate + message.ttl;
+    private static <T> List<T> drain(Queue<T> queue) {
+        List<T> items = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            items.add(item);
+        }
+        return items;
+    }
 
-            if (currentTime >= deleteTime) {
-                eraseQueue.poll();
-                deleteMessageImmediately(message.chatId, message.messageId);
-            } else {
-                break;
+    private void flushSafely() {
+        try {
+            flushPendingChanges();
+        } catch (Exception e) {
+            System.err.println("Ошибка сохранения расписания удалений: " + e.getMessage());
+        }
+    }
+
+    private void processMessageDeletion() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // take() блокируется до срока ближайшего сообщения
+                MessageToDelete message = eraseQueue.take();
+
+                long lateness = Math.max(0, System.currentTimeMillis() - message.deadline);
+                deletedCount.incrementAndGet();
+                totalLatenessMs.addAndGet(lateness);
+                maxLatenessMs.accumulateAndGet(lateness, Math::max);
+
+                if (lateness < MAX_DELETABLE_AGE_MS) {
+                    if (lateness >= CATCH_UP_LATENESS_MS) {
+                        throttleCatchUp();
+                    }
+                    deleteMessageImmediately(message.chatId, message.messageId);
+                }
+                pendingRemovals.add(ScheduledDeletion.key(message.chatId, message.messageId));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.err.println("Ошибка в worker удаления сообщений: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Выдерживает паузу между догоняющими удалениями, чтобы после рестарта
+     * не отправить в Telegram тысячи запросов разом
+     */
+    private void throttleCatchUp() throws InterruptedException {
+        long wait = lastCatchUpDeletion + CATCH_UP_INTERVAL_MS - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        lastCatchUpDeletion = System.currentTimeMillis();
+    }
+
     /**
      * Внутренний класс для хранения информации о сообщениях для удаления
      */
-    private static class MessageToDelete {
+    private static class MessageToDelete implements Delayed {
         final Long chatId;
         final Integer messageId;
-        final Long sentDate;
-        final Long ttl;
+        final long deadline; // время удаления, epoch millis
 
-        MessageToDelete(Long chatId, Integer messageId, Long sentDate, Long ttl) {
+        MessageToDelete(Long chatId, Integer messageId, long deadline) {
             this.chatId = chatId;
             this.messageId = messageId;
-            this.sentDate = sentDate;
-            this.ttl = ttl;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((MessageToDelete) other).deadline);
         }
     }
 
@@ -122,14 +319,17 @@ public class MessageDeletion {
      * Корректно завершает работу сервиса
      */
     public void shutdown() {
-        scheduler.shutdown();
+        worker.shutdownNow();
+        flushScheduler.shutdown();
         try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
+            if (!worker.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("Worker удаления сообщений не завершился за 5 секунд");
             }
+            flushScheduler.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
-            scheduler.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        // последняя пачка, чтобы не потерять расписание при остановке
+        flushSafely();
     }
-}
\ No newline at end of file
+}
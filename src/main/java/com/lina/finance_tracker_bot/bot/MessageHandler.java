@@ -1,6 +1,8 @@
 package com.lina.finance_tracker_bot.bot;
 
 import com.lina.finance_tracker_bot.services.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -8,9 +10,13 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Здесь только маршрутизация сообщений / callback'ов и UI (inline-кнопки).
+ * Время обработки каждой ветки пишется в таймер bot.handler (теги type, branch, outcome).
  */
 @Component
 public class MessageHandler {
@@ -24,6 +30,13 @@ public class MessageHandler {
     private final MessageSender messageSender;
     private final NotificationService notificationService;
     private final UserStateService userStateService;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final FileJobRunner fileJobRunner;
+    private final MeterRegistry meterRegistry;
+
+    // Состояния диалога, которые выставляет бот (значение тега branch)
+    private static final Set<String> DIALOG_STATES = Set.of("add_expense", "add_income", "create_notification", "import_csv");
 
     public MessageHandler(UserInfoService userInfoService,
                           ReportService reportService,
@@ -33,7 +46,11 @@ public class MessageHandler {
                           RemoveService removeService,
                           NotificationService notificationService,
                           MessageSender messageSender,
-                          UserStateService userStateService) {
+                          UserStateService userStateService,
+                          ExportService exportService,
+                          ImportService importService,
+                          FileJobRunner fileJobRunner,
+                          MeterRegistry meterRegistry) {
         this.userInfoService = userInfoService;
         this.reportService = reportService;
         this.factService = factService;
@@ -43,10 +60,78 @@ public class MessageHandler {
         this.messageSender = messageSender;
         this.notificationService = notificationService;
         this.userStateService = userStateService;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.fileJobRunner = fileJobRunner;
+        this.meterRegistry = meterRegistry;
     }
 
     // Обработка обычных текстовых сообщений
     public void handleMessage(Long chatId, String messageText, String username) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String branch = messageBranch(chatId, messageText);
+        boolean failed = true;
+        try {
+            routeMessage(chatId, messageText, username);
+            failed = false;
+        } finally {
+            recordHandler(sample, "message", branch, failed);
+        }
+    }
+
+    // Обработка callback-данных от inline-кнопок
+    public void handleCallback(Long chatId, String data, String username) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean known = false;
+        boolean failed = true;
+        try {
+            known = routeCallback(chatId, data, username);
+            failed = false;
+        } finally {
+            // неизвестные callback'и не пишем в тег, чтобы не плодить метрики
+            recordHandler(sample, "callback", known ? data : "unknown", failed);
+        }
+    }
+
+    // Обработка присланных файлов (импорт CSV)
+    public void handleDocument(Long chatId, String fileId, String fileName, String username) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean awaited = "import_csv".equals(userStateService.getState(chatId));
+        boolean failed = true;
+        try {
+            if (awaited) {
+                userStateService.clearState(chatId);
+                runFileJob(chatId, "⏳ Импортирую файл, пришлю результат, когда закончу",
+                        () -> importService.importCsv(chatId, fileId, fileName, username),
+                        result -> messageSender.sendText(chatId, result));
+            } else {
+                messageSender.sendTextWithTtl(chatId, "📎 Чтобы загрузить операции из файла, выберите «Импорт CSV» в меню отчётов.",
+                        MessageSender.NOTIFICATION_CREATED_TTL);
+            }
+            failed = false;
+        } finally {
+            recordHandler(sample, "document", awaited ? "import_csv" : "unexpected", failed);
+        }
+    }
+
+    private void exportHistory(Long chatId) {
+        runFileJob(chatId, "⏳ Готовлю выгрузку, файл придёт отдельным сообщением",
+                () -> exportService.exportCommand(chatId),
+                result -> messageSender.sendTextWithTtl(chatId, result, MessageSender.NOTIFICATION_CREATED_TTL));
+    }
+
+    // Импорт и выгрузка идут в фоновом пуле, чтобы не занимать полосу чата; результат приходит отдельным сообщением
+    private void runFileJob(Long chatId, String startedText, Supplier<String> job,
+                            Consumer<String> onResult) {
+        String reply = switch (fileJobRunner.submit(chatId, job, onResult)) {
+            case STARTED -> startedText;
+            case CHAT_BUSY -> "⏳ У вас уже идёт импорт или выгрузка, дождитесь результата";
+            case OVERLOADED -> "⚠️ Сейчас слишком много импортов и выгрузок, попробуйте через пару минут";
+        };
+        messageSender.sendTextWithTtl(chatId, reply, MessageSender.NOTIFICATION_CREATED_TTL);
+    }
+
+    private void routeMessage(Long chatId, String messageText, String username) {
         // 1) если ожидается выбор категории для удаления
         if (userStateService.isAwaitingCategoryDeletion(chatId)) {
             try {
@@ -81,58 +166,38 @@ public class MessageHandler {
                 case "add_expense" -> {
                     // обработка ввода / делегирование AddService
                     // формат: "Еда 500" или "500 Еда"
-                    String[] parts = messageText.trim().split("\\s+");
-                    if (parts.length != 2) {
-                        if (parts.length < 2)
+                    AmountInput input = parseAmountInput(messageText);
+                    if (input.parts() != 2) {
+                        if (input.parts() < 2)
                             messageSender.sendTextWithTtl(chatId, "⚠️ Введите категорию и сумму через пробел. Пример: Еда 500", MessageSender.NOTIFICATION_CREATED_TTL);
                         else
                             messageSender.sendTextWithTtl(chatId, "⚠️ За раз можно добавить только одну трату.", MessageSender.NOTIFICATION_CREATED_TTL);
                         return;
                     }
-                    String first = parts[0];
-                    String second = parts[1];
-                    String category;
-                    double amount;
-                    if (isNumeric(first)) {
-                        amount = Double.parseDouble(first.replace(",", "."));
-                        category = second;
-                    } else if (isNumeric(second)) {
-                        amount = Double.parseDouble(second.replace(",", "."));
-                        category = first;
-                    } else {
+                    if (input.amount() == null) {
                         messageSender.sendTextWithTtl(chatId, "⚠️ Одно поле должно быть числом (сумма). Пример: 500 Еда", MessageSender.NOTIFICATION_CREATED_TTL);
                         return;
                     }
                     userStateService.clearState(chatId);
-                    String result = addService.addExpense(chatId, category, amount, username);
+                    String result = addService.addExpense(chatId, input.label(), input.amount(), username);
                     messageSender.sendTextWithTtl(chatId, result, MessageSender.NOTIFICATION_CREATED_TTL);
                     return;
                 }
                 case "add_income" -> {
-                    String[] parts = messageText.trim().split("\\s+");
-                    if (parts.length != 2) {
-                        if (parts.length < 2)
+                    AmountInput input = parseAmountInput(messageText);
+                    if (input.parts() != 2) {
+                        if (input.parts() < 2)
                             messageSender.sendTextWithTtl(chatId, "⚠️ Введите источник и сумму через пробел. Пример: Зарплата 2000", MessageSender.NOTIFICATION_CREATED_TTL);
                         else
                             messageSender.sendTextWithTtl(chatId, "⚠️ За раз можно добавить только один доход.", MessageSender.NOTIFICATION_CREATED_TTL);
                         return;
                     }
-                    String first = parts[0];
-                    String second = parts[1];
-                    String source;
-                    double amount;
-                    if (isNumeric(first)) {
-                        amount = Double.parseDouble(first.replace(",", "."));
-                        source = second;
-                    } else if (isNumeric(second)) {
-                        amount = Double.parseDouble(second.replace(",", "."));
-                        source = first;
-                    } else {
+                    if (input.amount() == null) {
                         messageSender.sendTextWithTtl(chatId, "⚠️ Одно поле должно быть числом (сумма). Пример: 2000 Зарплата", MessageSender.NOTIFICATION_CREATED_TTL);
                         return;
                     }
                     userStateService.clearState(chatId);
-                    String result = addService.addIncome(chatId, source, amount, username);
+                    String result = addService.addIncome(chatId, input.label(), input.amount(), username);
                     messageSender.sendTextWithTtl(chatId, result, MessageSender.NOTIFICATION_CREATED_TTL);
                     return;
                 }
@@ -155,6 +220,12 @@ public class MessageHandler {
                     messageSender.sendTextWithTtl(chatId, result, MessageSender.NOTIFICATION_CREATED_TTL);
                     return;
                 }
+                case "import_csv" -> {
+                    // ждём файл; текст отменяет импорт
+                    userStateService.clearState(chatId);
+                    messageSender.sendTextWithTtl(chatId, "⚠️ Импорт отменён: нужно было прислать CSV-файл документом.", MessageSender.NOTIFICATION_CREATED_TTL);
+                    return;
+                }
                 default -> {
                     userStateService.clearState(chatId);
                     messageSender.sendText(chatId, "❌ Неизвестное состояние, попробуйте снова.");
@@ -168,11 +239,23 @@ public class MessageHandler {
             return;
         }
 
+        if ("/export".equals(messageText)) {
+            exportHistory(chatId);
+            return;
+        }
+
+        // отчёт за произвольный период: /report from 01.01.2024 to 31.12.2024
+        if (messageText.startsWith(ReportService.RANGE_COMMAND)) {
+            String r = reportService.handleReportCommand(chatId, messageText);
+            messageSender.sendTextWithTtl(chatId, r, MessageSender.NOTIFICATION_CREATED_TTL);
+            return;
+        }
+
         messageSender.sendText(chatId, "Используйте меню (кнопки). Нажмите /start, если нужно.");
     }
 
-    // Обработка callback-данных от inline-кнопок
-    public void handleCallback(Long chatId, String data, String username) {
+    // Маршрутизация callback'а; false — неизвестная команда
+    private boolean routeCallback(Long chatId, String data, String username) {
         switch (data) {
             case "add_expense" -> {
                 userStateService.setState(chatId, "add_expense");
@@ -216,6 +299,12 @@ public class MessageHandler {
                 String r = reportService.generateYearReport(chatId);
                 messageSender.sendTextWithTtl(chatId, r, MessageSender.NOTIFICATION_CREATED_TTL);
             }
+            case "export_csv" -> exportHistory(chatId);
+            case "import_csv" -> {
+                userStateService.setState(chatId, "import_csv");
+                messageSender.sendTextWithTtl(chatId, "Пришлите CSV-файл (можно .csv.gz) документом\n" +
+                        "💡 Формат: date,type,category,amount\nНапример: 31.01.2024,expense,Еда,500", MessageSender.NOTIFICATION_CREATED_TTL);
+            }
 
             // курсы валют
             case "rate_usd" -> handleRateCommand(chatId, "/rate usd");
@@ -238,11 +327,67 @@ public class MessageHandler {
             }
 
             case "back_main" -> showMainMenu(chatId);
-            default -> messageSender.sendText(chatId, "❓ Неизвестная callback-команда");
+            default -> {
+                messageSender.sendText(chatId, "❓ Неизвестная callback-команда");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Ветка обработки сообщения для метрик, в том же порядке, что и в routeMessage
+    private String messageBranch(Long chatId, String messageText) {
+        if (userStateService.isAwaitingCategoryDeletion(chatId)) {
+            return "category_deletion";
+        }
+        if (userStateService.isAwaitingNotificationDeletion(chatId)) {
+            return "notification_deletion";
         }
+        if (userStateService.hasState(chatId)) {
+            String state = userStateService.getState(chatId);
+            return DIALOG_STATES.contains(state) ? state : "unknown_state";
+        }
+        if (messageText.startsWith(ReportService.RANGE_COMMAND)) {
+            return "report_range";
+        }
+        if ("/export".equals(messageText)) {
+            return "export";
+        }
+        return "/start".equals(messageText) ? "start" : "other";
+    }
+
+    private void recordHandler(Timer.Sample sample, String type, String branch, boolean failed) {
+        sample.stop(meterRegistry.timer("bot.handler",
+                "type", type, "branch", branch, "outcome", failed ? "error" : "success"));
+    }
+
+    /**
+     * Разбирает ввод вида "Еда 500" или "500 Еда"
+     * @param messageText текст сообщения
+     * @return количество слов, категория и сумма (сумма null, если ни одно поле не число)
+     */
+    static AmountInput parseAmountInput(String messageText) {
+        String[] parts = messageText.trim().split("\\s+");
+        if (parts.length != 2) {
+            return new AmountInput(parts.length, null, null);
+        }
+        String first = parts[0];
+        String second = parts[1];
+        if (isNumeric(first)) {
+            return new AmountInput(2, second, Double.parseDouble(first.replace(",", ".")));
+        } else if (isNumeric(second)) {
+            return new AmountInput(2, first, Double.parseDouble(second.replace(",", ".")));
+        }
+        return new AmountInput(2, null, null);
+    }
+
+    /**
+     * Результат разбора ввода суммы
+     */
+    record AmountInput(int parts, String label, Double amount) {
     }
 
-    private boolean isNumeric(String s) {
+    private static boolean isNumeric(String s) {
         try {
             Double.parseDouble(s.replace(",", "."));
             return true;
@@ -284,7 +429,8 @@ public class MessageHandler {
     }
 
     private void showReportsMenu(Long chatId) {
-        SendMessage message = new SendMessage(chatId.toString(), "📊 Выберите отчёт:");
+        SendMessage message = new SendMessage(chatId.toString(),
+                "📊 Выберите отчёт:\n💡 За любой период: /report from 01.01.2024 to 31.12.2024");
 
         InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -292,6 +438,8 @@ public class MessageHandler {
         rows.add(List.of(InlineKeyboardButton.builder().text("📅 Отчёт за сегодня").callbackData("report_today").build()));
         rows.add(List.of(InlineKeyboardButton.builder().text("📅 Отчёт за неделю").callbackData("report_week").build()));
         rows.add(List.of(InlineKeyboardButton.builder().text("📆 Отчёт за год").callbackData("report_year").build()));
+        rows.add(List.of(InlineKeyboardButton.builder().text("📤 Выгрузить историю (CSV)").callbackData("export_csv").build()));
+        rows.add(List.of(InlineKeyboardButton.builder().text("📥 Импорт CSV").callbackData("import_csv").build()));
         rows.add(List.of(InlineKeyboardButton.builder().text("⬅️ Назад").callbackData("back_main").build()));
 
         keyboard.setKeyboard(rows);
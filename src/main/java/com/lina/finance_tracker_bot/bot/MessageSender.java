@@ -1,12 +1,30 @@
 package com.lina.finance_tracker_bot.bot;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * Класс для простых сообщений и с авто удалением
+ * Класс для простых сообщений и с авто удалением.
+ * Отправка асинхронная: сообщения проходят через общий лимит Telegram (~30 в секунду)
+ * и лимит на чат (~1 в секунду), сообщения одного чата уходят по порядку.
+ * На ответ 429 отправка ставится на паузу на retry_after и повторяется.
+ * Каждый вызов Telegram API пишется в таймер bot.telegram.api.
  */
 @Service
 public class MessageSender {
@@ -16,11 +34,31 @@ public class MessageSender {
     public static final long REMINDER_TTL = 10 * 60 * 60; // 10 часов
     public static final long DEFAULT_TTL = 24 * 60 * 60; // 24 часа по умолчанию
 
+    // Лимиты Telegram Bot API
+    private static final double GLOBAL_MESSAGES_PER_SECOND = 30;
+    private static final double CHAT_MESSAGES_PER_SECOND = 1;
+    private static final double CHAT_BURST = 3; // несколько ответов подряд в один чат допустимы
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int TOO_MANY_REQUESTS = 429;
+
     private TelegramLongPollingBot bot;
     private final MessageDeletion messageDeletion;
+    private final MeterRegistry meterRegistry;
+
+    private final TokenBucket globalBucket = new TokenBucket(GLOBAL_MESSAGES_PER_SECOND, GLOBAL_MESSAGES_PER_SECOND);
+    private final ConcurrentMap<Long, ChatChannel> channels = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sendExecutor = Executors.newScheduledThreadPool(4);
 
-    public MessageSender(MessageDeletion messageDeletion) {
+    // Метрики очереди отправки
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public MessageSender(MessageDeletion messageDeletion, MeterRegistry meterRegistry) {
         this.messageDeletion = messageDeletion;
+        this.meterRegistry = meterRegistry;
+        // забываем чаты, у которых нет очереди и восстановился лимит
+        sendExecutor.scheduleWithFixedDelay(this::cleanupIdleChannels, 1, 1, TimeUnit.MINUTES);
     }
 
     public void setTelegramBot(TelegramLongPollingBot bot) {
@@ -35,18 +73,10 @@ public class MessageSender {
 
     // Отправляет простой текстовый ответ пользователю с заданным TTL.
      public void sendTextWithTtl(Long chatId, String text, long ttlSeconds) {
-        try {
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId.toString());
-            message.setText(text);
-            Message sentMessage = bot.execute(message);
-
-            if (ttlSeconds > 0) {
-                messageDeletion.scheduleMessageForDeletion(chatId, sentMessage.getMessageId(), ttlSeconds);
-            }
-        } catch (TelegramApiException e) {
-            System.out.println("Ошибка отправки сообщения: " + e.getMessage()); // Ваша оригинальная ошибка
-        }
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(text);
+        sendAsync(message, ttlSeconds);
     }
 
     // Отправляет готовый объект SendMessage (например, с inline-клавиатурой) без TTL.
@@ -61,21 +91,145 @@ public class MessageSender {
 
     // Приватный вспомогательный метод для отправки SendMessage и планирования удаления
     private void sendMessageWithTtl(SendMessage sendMessage, long ttlSeconds) {
+        sendAsync(sendMessage, ttlSeconds);
+    }
+
+    /**
+     * Ставит сообщение в очередь отправки с учётом лимитов Telegram.
+     * Удаление по TTL планируется после фактической отправки.
+     *
+     * @param sendMessage сообщение для отправки
+     * @param ttlSeconds время жизни сообщения в секундах (0 — без удаления)
+     * @return future с отправленным сообщением
+     */
+    public CompletableFuture<Message> sendAsync(SendMessage sendMessage, long ttlSeconds) {
+        Long chatId = Long.parseLong(sendMessage.getChatId());
+        pendingCount.incrementAndGet();
+
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        // compute атомарен по ключу, поэтому очистка не удалит канал, в который сейчас добавляют
+        channels.compute(chatId, (id, existing) -> {
+            ChatChannel channel = existing != null ? existing : new ChatChannel();
+            CompletableFuture<Message> previous = channel.tail;
+            channel.tail = result;
+            // следующее сообщение чата отправляется только после предыдущего
+            previous.handle((message, error) -> null)
+                    .thenCompose(ignored -> schedule(sendMessage, channel, 1))
+                    .whenComplete((message, error) -> relay(result, message, error));
+            return channel;
+        });
+
+        return result.whenComplete((sentMessage, error) -> {
+            pendingCount.decrementAndGet();
+            if (error != null) {
+                failedCount.incrementAndGet();
+                System.err.println("Ошибка отправки сообщения: " + error.getMessage());
+            } else if (ttlSeconds > 0) {
+                messageDeletion.scheduleMessageForDeletion(chatId, sentMessage.getMessageId(), ttlSeconds);
+            }
+        });
+    }
+
+    /**
+     * @return количество сообщений, ожидающих отправки
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * @return сколько раз Telegram ответил 429
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+
+    /**
+     * @return количество сообщений, которые не удалось отправить
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Останавливает очередь отправки, дожидаясь уже запланированных сообщений
+     */
+    public void shutdown() {
+        sendExecutor.shutdown();
+        try {
+            if (!sendExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                sendExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            sendExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Планирует отправку на ближайший слот, разрешённый лимитами чата и общим лимитом
+    private CompletableFuture<Message> schedule(SendMessage sendMessage, ChatChannel channel, int attempt) {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        long delay = Math.max(channel.bucket.reserve(), globalBucket.reserve());
+        try {
+            sendExecutor.schedule(() -> execute(sendMessage, channel, attempt, future), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // очередь отправки уже остановлена: future должен завершиться, иначе его ждут вечно
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void execute(SendMessage sendMessage, ChatChannel channel, int attempt, CompletableFuture<Message> future) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
-            Message sentMessage = bot.execute(sendMessage);
-
-            if (ttlSeconds > 0) {
-                messageDeletion.scheduleMessageForDeletion(
-                        Long.parseLong(sendMessage.getChatId()),
-                        sentMessage.getMessageId(),
-                        ttlSeconds
-                );
+            Message message = bot.execute(sendMessage);
+            recordApiCall(sample, "success");
+            future.complete(message);
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+            boolean rateLimited = Integer.valueOf(TOO_MANY_REQUESTS).equals(e.getErrorCode());
+            recordApiCall(sample, rateLimited ? "rate_limited" : "error");
+            if (rateLimited && retryAfter != null && attempt < MAX_ATTEMPTS) {
+                rateLimitedCount.incrementAndGet();
+                long pause = TimeUnit.SECONDS.toNanos(retryAfter);
+                globalBucket.pause(pause);
+                channel.bucket.pause(pause);
+                // после остановки очереди schedule вернёт уже завершённый с ошибкой future
+                schedule(sendMessage, channel, attempt + 1)
+                        .whenComplete((message, error) -> relay(future, message, error));
+            } else {
+                future.completeExceptionally(e);
             }
-        } catch (TelegramApiException e) {
-            System.err.println("Ошибка при отправке SendMessage с авто удалением: " + e.getMessage()); // Ваша оригинальная ошибка
+        } catch (TelegramApiException | RuntimeException e) {
+            recordApiCall(sample, "error");
+            future.completeExceptionally(e);
         }
     }
 
+    private void recordApiCall(Timer.Sample sample, String outcome) {
+        sample.stop(meterRegistry.timer("bot.telegram.api", "method", "sendMessage", "outcome", outcome));
+    }
 
+    private static void relay(CompletableFuture<Message> target, Message message, Throwable error) {
+        if (error != null) {
+            target.completeExceptionally(error);
+        } else {
+            target.complete(message);
+        }
+    }
 
-}
\ No newline at end of file
+    private void cleanupIdleChannels() {
+        for (Long chatId : channels.keySet()) {
+            channels.computeIfPresent(chatId, (id, channel) ->
+                    channel.tail.isDone() && channel.bucket.isFull() ? null : channel);
+        }
+    }
+
+    /**
+     * Очередь и лимит отправки одного чата
+     */
+    private static class ChatChannel {
+        final TokenBucket bucket = new TokenBucket(CHAT_BURST, CHAT_MESSAGES_PER_SECOND);
+        CompletableFuture<Message> tail = CompletableFuture.completedFuture(null);
+    }
+}
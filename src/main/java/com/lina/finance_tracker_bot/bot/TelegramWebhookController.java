@@ -0,0 +1,48 @@
+package com.lina.finance_tracker_bot.bot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * HTTP-точка приёма обновлений от Telegram в режиме webhook.
+ * Проверяет секрет из заголовка (он обязателен, см. WebhookConfiguration),
+ * кладёт обновление в очередь и сразу отвечает.
+ */
+@RestController
+@ConditionalOnProperty(name = "bot.ingestion.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private final WebhookUpdateReceiver receiver;
+    private final String secret;
+
+    public TelegramWebhookController(WebhookUpdateReceiver receiver,
+                                     @Value("${bot.webhook.secret:}") String secret) {
+        this.receiver = receiver;
+        this.secret = secret;
+    }
+
+    /**
+     * Принимает обновление
+     * @param token секрет, заданный при регистрации webhook
+     * @param update обновление Telegram
+     * @return 200 — принято, 401 — чужой запрос, 503 — очередь полна (Telegram повторит)
+     */
+    @PostMapping("${bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> receive(@RequestHeader(value = "X-Telegram-Bot-Api-Secret-Token", required = false) String token,
+                                        @RequestBody Update update) {
+        if (secret.isEmpty() || !secret.equals(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!receiver.offer(update)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.lina.finance_tracker_bot.bot;
+
+/**
+ * Token bucket с резервированием: вместо отказа возвращает,
+ * сколько нужно подождать до своего "слота".
+ * Используется для ограничения скорости отправки сообщений в Telegram.
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param capacity максимальный "запас" (сколько сообщений можно отправить подряд)
+     * @param tokensPerSecond скорость пополнения
+     */
+    TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Резервирует один токен
+     * @return задержка в наносекундах, после которой токен можно использовать (0 — сразу)
+     */
+    synchronized long reserve() {
+        refill();
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * Запрещает выдачу токенов на указанное время (например, после ответа 429 с retry_after)
+     * @param nanos длительность паузы в наносекундах
+     */
+    synchronized void pause(long nanos) {
+        refill();
+        tokens = Math.min(tokens, 0) - nanos * tokensPerNano;
+    }
+
+    /**
+     * @return true, если запас полностью восстановлен и bucket можно забыть
+     */
+    synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
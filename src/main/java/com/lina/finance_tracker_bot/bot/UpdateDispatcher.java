@@ -0,0 +1,133 @@
+package com.lina.finance_tracker_bot.bot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Распределяет обработку обновлений по последовательным "полосам".
+ * Полоса выбирается по chatId, поэтому обновления одного чата обрабатываются
+ * строго по порядку (важно для диалогов UserStateService),
+ * а разные чаты — параллельно и не ждут друг друга.
+ * Очередь каждой полосы ограничена: при переполнении поток приёма ждёт.
+ */
+@Component
+public class UpdateDispatcher {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final AtomicLong[] busyNanos;
+    private final AtomicLong[] processed;
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * @param laneCount количество параллельных полос
+     * @param queueCapacity максимальная длина очереди одной полосы
+     */
+    public UpdateDispatcher(@Value("${bot.dispatcher.lanes:8}") int laneCount,
+                            @Value("${bot.dispatcher.queue-capacity:100}") int queueCapacity) {
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        this.busyNanos = new AtomicLong[laneCount];
+        this.processed = new AtomicLong[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String threadName = "update-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> new Thread(r, threadName),
+                    UpdateDispatcher::waitForSpace);
+            busyNanos[i] = new AtomicLong();
+            processed[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Ставит обработку обновления в полосу его чата
+     * @param chatId ID чата, по которому выбирается полоса
+     * @param task обработка обновления
+     */
+    public void dispatch(Long chatId, Runnable task) {
+        int lane = laneOf(chatId);
+        lanes[lane].execute(() -> {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Exception e) {
+                System.err.println("Ошибка обработки обновления: " + e.getMessage());
+            } finally {
+                busyNanos[lane].addAndGet(System.nanoTime() - start);
+                processed[lane].incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * @return количество полос
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @param lane номер полосы
+     * @return количество обновлений, ожидающих в очереди полосы
+     */
+    public int getQueueDepth(int lane) {
+        return lanes[lane].getQueue().size();
+    }
+
+    /**
+     * @param lane номер полосы
+     * @return количество обработанных полосой обновлений
+     */
+    public long getProcessedCount(int lane) {
+        return processed[lane].get();
+    }
+
+    /**
+     * @param lane номер полосы
+     * @return доля времени с момента старта, которую полоса была занята (0..1)
+     */
+    public double getUtilization(int lane) {
+        long elapsed = System.nanoTime() - startedAt;
+        return elapsed <= 0 ? 0 : (double) busyNanos[lane].get() / elapsed;
+    }
+
+    /**
+     * Останавливает полосы, давая доработать уже принятым обновлениям
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ThreadPoolExecutor lane : lanes) {
+                if (!lane.awaitTermination(5, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int laneOf(Long chatId) {
+        return Math.floorMod(Long.hashCode(chatId), lanes.length);
+    }
+
+    // При заполненной очереди блокирует поток приёма вместо отбрасывания обновления
+    private static void waitForSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Полоса обработки остановлена");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Прервано ожидание места в очереди", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.lina.finance_tracker_bot.bot;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Приём обновлений в режиме webhook.
+ * HTTP-запрос Telegram только кладёт обновление в ограниченную очередь и сразу получает ответ;
+ * отдельный поток разбирает очередь и передаёт обновления боту (дальше — в полосы UpdateDispatcher).
+ * Если очередь полна, обновление не принимается: Telegram повторит его позже.
+ */
+public class WebhookUpdateReceiver {
+
+    private final BlockingQueue<Update> queue;
+    private final Consumer<Update> sink;
+    private final Thread worker;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param sink обработка обновления (FinanceTrackerBot.onUpdateReceived)
+     * @param capacity максимальная длина очереди
+     */
+    public WebhookUpdateReceiver(Consumer<Update> sink, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sink = sink;
+        this.worker = new Thread(this::drain, "webhook-ingest");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Принимает обновление без ожидания
+     * @param update обновление из запроса Telegram
+     * @return false, если очередь полна
+     */
+    public boolean offer(Update update) {
+        if (running && queue.offer(update)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            try {
+                // ожидание с таймаутом, чтобы поток заметил остановку при пустой очереди
+                Update update = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (update != null) {
+                    sink.accept(update);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Ошибка приёма обновления из webhook: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return количество обновлений, ожидающих в очереди
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return количество обновлений, не принятых из-за полной очереди
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Перестаёт принимать обновления и даёт доразобрать очередь
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+    }
+}
@@ -3,6 +3,7 @@ package com.lina.finance_tracker_bot.configuration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lina.finance_tracker_bot.bot.FinanceTrackerBot;
 import okhttp3.OkHttpClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
@@ -18,12 +19,14 @@ public class FinanceTrackerBotConfiguration {
 
     /**
      * Создаёт и настраивает TelegramBotsApi, регистрируя в нём экземпляр бота.
+     * Только в режиме long polling; в режиме webhook обновления принимает WebhookConfiguration.
      *
      * @param financeTrackerBot экземпляр бота, который будет зарегистрирован в Telegram API
      * @return настроенный объект TelegramBotsApi с зарегистрированным ботом
      * @throws TelegramApiException при ошибке регистрации бота в Telegram API
      */
     @Bean
+    @ConditionalOnProperty(name = "bot.ingestion.mode", havingValue = "polling", matchIfMissing = true)
     public TelegramBotsApi telegramBotsApi(FinanceTrackerBot financeTrackerBot) throws TelegramApiException {
         var api = new TelegramBotsApi(DefaultBotSession.class);
         api.registerBot(financeTrackerBot);
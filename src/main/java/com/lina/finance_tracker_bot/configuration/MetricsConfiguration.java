@@ -0,0 +1,191 @@
+package com.lina.finance_tracker_bot.configuration;
+
+import com.lina.finance_tracker_bot.bot.MessageDeletion;
+import com.lina.finance_tracker_bot.bot.MessageSender;
+import com.lina.finance_tracker_bot.bot.UpdateDispatcher;
+import com.lina.finance_tracker_bot.bot.WebhookUpdateReceiver;
+import com.lina.finance_tracker_bot.services.DailyBucketIndex;
+import com.lina.finance_tracker_bot.services.ExportService;
+import com.lina.finance_tracker_bot.services.FileJobRunner;
+import com.lina.finance_tracker_bot.services.ReportCache;
+import com.lina.finance_tracker_bot.services.UserInfoService;
+import com.lina.finance_tracker_bot.services.UserStateService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Метрики очередей и состояний бота для эндпоинта /actuator/prometheus.
+ * Здесь собраны датчики и счётчики состояния: их значения читаются из геттеров сервисов
+ * в момент сбора. Таймеры и счётчики событий, которые нужно отмечать по ходу работы
+ * (MessageSender, MessageDeletion, MessageHandler, DatabaseWriter, BackupUploader,
+ * ExportService, ImportService), сервисы регистрируют сами через MeterRegistry.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Очередь удаления сообщений: глубина, количество удалённых и опоздание
+     */
+    @Bean
+    public MeterBinder messageDeletionMetrics(MessageDeletion messageDeletion) {
+        return registry -> {
+            Gauge.builder("bot.deletion.queue.depth", messageDeletion, MessageDeletion::getQueueDepth)
+                    .description("Сообщения, ожидающие удаления по TTL")
+                    .register(registry);
+            FunctionCounter.builder("bot.deletion.deleted", messageDeletion, MessageDeletion::getDeletedCount)
+                    .description("Сообщения, удалённые по TTL")
+                    .register(registry);
+            Gauge.builder("bot.deletion.lateness.max", messageDeletion, MessageDeletion::getMaxLatenessMs)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            Gauge.builder("bot.deletion.lateness.avg", messageDeletion, MessageDeletion::getAverageLatenessMs)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Очередь отправки сообщений: ожидающие, ответы 429 и ошибки
+     */
+    @Bean
+    public MeterBinder messageSenderMetrics(MessageSender messageSender) {
+        return registry -> {
+            Gauge.builder("bot.sender.pending", messageSender, MessageSender::getPendingCount)
+                    .description("Сообщения, ожидающие отправки")
+                    .register(registry);
+            FunctionCounter.builder("bot.sender.rate.limited", messageSender, MessageSender::getRateLimitedCount)
+                    .description("Ответы Telegram 429")
+                    .register(registry);
+            FunctionCounter.builder("bot.sender.failed", messageSender, MessageSender::getFailedCount)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Полосы обработки обновлений: очередь, обработанные и загрузка каждой полосы
+     */
+    @Bean
+    public MeterBinder updateDispatcherMetrics(UpdateDispatcher updateDispatcher) {
+        return registry -> {
+            for (int i = 0; i < updateDispatcher.getLaneCount(); i++) {
+                int lane = i;
+                String laneTag = String.valueOf(lane);
+                Gauge.builder("bot.dispatcher.queue.depth", updateDispatcher, d -> d.getQueueDepth(lane))
+                        .tag("lane", laneTag)
+                        .register(registry);
+                FunctionCounter.builder("bot.dispatcher.processed", updateDispatcher, d -> d.getProcessedCount(lane))
+                        .tag("lane", laneTag)
+                        .register(registry);
+                Gauge.builder("bot.dispatcher.utilization", updateDispatcher, d -> d.getUtilization(lane))
+                        .tag("lane", laneTag)
+                        .register(registry);
+            }
+        };
+    }
+
+    /**
+     * Количество активных диалогов и ожиданий выбора номера
+     */
+    @Bean
+    public MeterBinder userStateMetrics(UserStateService userStateService) {
+        return registry -> {
+            Gauge.builder("bot.user.states", userStateService, UserStateService::getStateCount)
+                    .tag("kind", "dialog")
+                    .register(registry);
+            Gauge.builder("bot.user.states", userStateService, UserStateService::getAwaitingCategoryDeletionCount)
+                    .tag("kind", "category_deletion")
+                    .register(registry);
+            Gauge.builder("bot.user.states", userStateService, UserStateService::getAwaitingNotificationDeletionCount)
+                    .tag("kind", "notification_deletion")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Кэш пользователей: размер, попадания и промахи
+     */
+    @Bean
+    public MeterBinder userCacheMetrics(UserInfoService userInfoService) {
+        return registry -> {
+            Gauge.builder("bot.user.cache.size", userInfoService, UserInfoService::getCacheSize)
+                    .register(registry);
+            FunctionCounter.builder("bot.user.cache.requests", userInfoService, UserInfoService::getCacheHits)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("bot.user.cache.requests", userInfoService, UserInfoService::getCacheMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Кэш отчётов: размер, попадания, промахи и вытеснения
+     */
+    @Bean
+    public MeterBinder reportCacheMetrics(ReportCache reportCache) {
+        return registry -> {
+            Gauge.builder("bot.report.cache.size", reportCache, ReportCache::getSize)
+                    .register(registry);
+            Gauge.builder("bot.report.cache.bytes", reportCache, ReportCache::getSizeBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("bot.report.cache.requests", reportCache, ReportCache::getHits)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("bot.report.cache.requests", reportCache, ReportCache::getMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("bot.report.cache.evictions", reportCache, ReportCache::getEvictions)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Отчёты за период: сколько чатов держат накопленные суммы в памяти
+     */
+    @Bean
+    public MeterBinder reportRangeMetrics(DailyBucketIndex bucketIndex) {
+        return registry -> Gauge.builder("bot.report.range.chats", bucketIndex, DailyBucketIndex::getSize)
+                .register(registry);
+    }
+
+    /**
+     * Выгрузки CSV, идущие сейчас (строки и время — в ExportService, байты — bot.backup.bytes{kind=export})
+     */
+    @Bean
+    public MeterBinder exportMetrics(ExportService exportService) {
+        return registry -> Gauge.builder("bot.export.active", exportService, ExportService::getActiveExports)
+                .register(registry);
+    }
+
+    /**
+     * Пул фоновых импортов и выгрузок: выполняющиеся и ожидающие задачи
+     */
+    @Bean
+    public MeterBinder fileJobMetrics(FileJobRunner fileJobRunner) {
+        return registry -> {
+            Gauge.builder("bot.file.jobs.active", fileJobRunner, FileJobRunner::getActiveCount)
+                    .register(registry);
+            Gauge.builder("bot.file.jobs.queue.depth", fileJobRunner, FileJobRunner::getQueueDepth)
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Приём через webhook: глубина очереди и отклонённые при переполнении обновления
+     * (в режиме long polling очереди нет и метрики не регистрируются)
+     */
+    @Bean
+    public MeterBinder webhookMetrics(ObjectProvider<WebhookUpdateReceiver> receiver) {
+        return registry -> receiver.ifAvailable(r -> {
+            Gauge.builder("bot.webhook.queue.depth", r, WebhookUpdateReceiver::getQueueDepth)
+                    .register(registry);
+            FunctionCounter.builder("bot.webhook.rejected", r, WebhookUpdateReceiver::getRejectedCount)
+                    .register(registry);
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package com.lina.finance_tracker_bot.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Режим хранения SQLite с журналом WAL (bot.storage.mode=wal).
+ * Записи идут через одно соединение писателя, а чтения (транзакции readOnly,
+ * в том числе обычные запросы репозиториев) — через отдельный пул соединений только для чтения.
+ * В WAL читатели не блокируют писателя и видят последнее зафиксированное состояние.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bot.storage.mode", havingValue = "wal")
+public class SqliteStorageConfiguration {
+
+    // Открыть файл БД только для чтения (SQLITE_OPEN_READONLY)
+    private static final String OPEN_READONLY = "1";
+
+    @Value("${bot.storage.busy-timeout-ms:5000}")
+    private int busyTimeoutMs;
+
+    // Размер кэша страниц на соединение, в килобайтах
+    @Value("${bot.storage.cache-size-kb:16384}")
+    private int cacheSizeKb;
+
+    @Value("${bot.storage.read-pool-size:4}")
+    private int readPoolSize;
+
+    // При групповом коммите fsync делается на каждый коммит: один на группу, а не на запись
+    @Value("${bot.storage.group-commit.enabled:false}")
+    private boolean groupCommitEnabled;
+
+    /**
+     * Соединение писателя: включает WAL и synchronous=NORMAL
+     * (FULL при групповом коммите, чтобы подтверждённая запись переживала сбой питания),
+     * остальные настройки берутся из spring.datasource.hikari
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("sqlite-write");
+        dataSource.setMaximumPoolSize(1);
+        dataSource.addDataSourceProperty("journal_mode", "WAL");
+        dataSource.addDataSourceProperty("synchronous", groupCommitEnabled ? "FULL" : "NORMAL");
+        dataSource.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeoutMs));
+        dataSource.addDataSourceProperty("cache_size", String.valueOf(-cacheSizeKb));
+        return dataSource;
+    }
+
+    /**
+     * Пул читателей: соединения открываются только для чтения и не меняют режим журнала
+     */
+    @Bean
+    public HikariDataSource readDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("sqlite-read");
+        dataSource.setMaximumPoolSize(readPoolSize);
+        dataSource.addDataSourceProperty("open_mode", OPEN_READONLY);
+        dataSource.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeoutMs));
+        dataSource.addDataSourceProperty("cache_size", String.valueOf(-cacheSizeKb));
+        return dataSource;
+    }
+
+    /**
+     * Основной DataSource для JPA: соединение берётся при первом запросе,
+     * когда уже известно, только ли для чтения текущая транзакция
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource writeDataSource, HikariDataSource readDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writeDataSource);
+        dataSource.setReadOnlyDataSource(readDataSource);
+        return dataSource;
+    }
+}
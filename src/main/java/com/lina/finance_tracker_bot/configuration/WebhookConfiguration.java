@@ -0,0 +1,81 @@
+package com.lina.finance_tracker_bot.configuration;
+
+import com.lina.finance_tracker_bot.bot.FinanceTrackerBot;
+import com.lina.finance_tracker_bot.bot.WebhookUpdateReceiver;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+/**
+ * Режим приёма обновлений через webhook (bot.ingestion.mode=webhook).
+ * Вместо long polling Telegram сам присылает обновления на HTTP-точку
+ * {@link com.lina.finance_tracker_bot.bot.TelegramWebhookController}, которая работает на том же
+ * веб-сервере, что и keep-alive. Адрес регистрируется в Telegram при запуске приложения.
+ * Без секрета (bot.webhook.secret) приложение в этом режиме не запускается: иначе точка
+ * принимала бы обновления от кого угодно.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bot.ingestion.mode", havingValue = "webhook")
+public class WebhookConfiguration {
+
+    // Публичный адрес приложения, например https://finance-bot.onrender.com
+    @Value("${bot.webhook.public-url}")
+    private String publicUrl;
+
+    @Value("${bot.webhook.path:/telegram/webhook}")
+    private String path;
+
+    @Value("${bot.webhook.secret:}")
+    private String secret;
+
+    private final FinanceTrackerBot financeTrackerBot;
+
+    public WebhookConfiguration(FinanceTrackerBot financeTrackerBot) {
+        this.financeTrackerBot = financeTrackerBot;
+    }
+
+    /**
+     * Проверяет секрет до создания HTTP-точки
+     */
+    @PostConstruct
+    public void checkSecret() {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("В режиме webhook нужно задать bot.webhook.secret (BOT_WEBHOOK_SECRET)");
+        }
+        // Telegram принимает секрет из 1-256 символов A-Z, a-z, 0-9, _ и -
+        if (!secret.matches("[A-Za-z0-9_-]{1,256}")) {
+            throw new IllegalStateException("bot.webhook.secret может содержать только A-Z, a-z, 0-9, _ и - (до 256 символов)");
+        }
+    }
+
+    /**
+     * Очередь принятых обновлений и поток, передающий их боту
+     */
+    @Bean(destroyMethod = "shutdown")
+    public WebhookUpdateReceiver webhookUpdateReceiver(@Value("${bot.webhook.queue-capacity:1000}") int capacity) {
+        return new WebhookUpdateReceiver(financeTrackerBot::onUpdateReceived, capacity);
+    }
+
+    /**
+     * Регистрирует адрес webhook в Telegram, когда HTTP-точка уже принимает запросы
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerWebhook() {
+        SetWebhook setWebhook = SetWebhook.builder()
+                .url(publicUrl + path)
+                .secretToken(secret)
+                .build();
+        try {
+            financeTrackerBot.execute(setWebhook);
+            System.out.println("🌐 Webhook зарегистрирован: " + publicUrl + path);
+        } catch (TelegramApiException e) {
+            System.err.println("Ошибка регистрации webhook: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.lina.finance_tracker_bot.modelSqlLite;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+
+/**
+ * Денежные суммы в копейках (long).
+ * Суммы хранятся и складываются целыми копейками, поэтому итоги и баланс точные,
+ * а в рубли с копейками переводятся только при выводе.
+ */
+public final class Money {
+
+    private static final int MINOR_PER_UNIT = 100;
+
+    // Тот же разделитель, что даёт String.format("%.2f") в локали по умолчанию
+    private static final char DECIMAL_SEPARATOR = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+
+    private Money() {
+    }
+
+    /**
+     * Переводит сумму из рублей в копейки с округлением до копейки
+     * @param amount сумма в рублях
+     * @return сумма в копейках
+     */
+    public static long toMinor(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Переводит копейки в рубли (для колонки amount и вывода)
+     * @param minor сумма в копейках
+     * @return сумма в рублях
+     */
+    public static double toAmount(long minor) {
+        return minor / (double) MINOR_PER_UNIT;
+    }
+
+    /**
+     * Дописывает сумму в формате "1234.50" без промежуточных объектов
+     * @param sb куда дописать
+     * @param minor сумма в копейках
+     * @return тот же StringBuilder
+     */
+    public static StringBuilder append(StringBuilder sb, long minor) {
+        return append(sb, minor, DECIMAL_SEPARATOR);
+    }
+
+    /**
+     * Дописывает сумму с указанным разделителем копеек (например, '.' для CSV в любой локали)
+     * @param sb куда дописать
+     * @param minor сумма в копейках
+     * @param separator разделитель рублей и копеек
+     * @return тот же StringBuilder
+     */
+    public static StringBuilder append(StringBuilder sb, long minor, char separator) {
+        if (minor < 0) {
+            sb.append('-');
+        }
+        long abs = Math.abs(minor);
+        long cents = abs % MINOR_PER_UNIT;
+        sb.append(abs / MINOR_PER_UNIT).append(separator);
+        if (cents < 10) {
+            sb.append('0');
+        }
+        return sb.append(cents);
+    }
+
+    /**
+     * @param minor сумма в копейках
+     * @return сумма в формате "1234.50"
+     */
+    public static String format(long minor) {
+        return append(new StringBuilder(24), minor).toString();
+    }
+}
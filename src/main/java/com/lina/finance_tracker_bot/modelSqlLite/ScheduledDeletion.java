@@ -0,0 +1,59 @@
+package com.lina.finance_tracker_bot.modelSqlLite;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Запланированное удаление сообщения бота.
+ * Хранится в БД, чтобы после перезапуска сообщения всё равно были удалены.
+ * Ключ — "chatId:messageId", поэтому повторная запись того же сообщения не дублируется.
+ */
+@Entity
+@Table(name = "scheduled_deletions")
+public class ScheduledDeletion implements Persistable<String> {
+    @Id
+    private String id;
+
+    private Long chatId;
+    private Integer messageId;
+
+    // время удаления, epoch millis
+    private Long deadline;
+
+    // новые записи вставляются без предварительного SELECT (см. Persistable)
+    @Transient
+    private boolean isNew = true;
+
+    public ScheduledDeletion() {}
+
+    public ScheduledDeletion(Long chatId, Integer messageId, Long deadline) {
+        this.id = key(chatId, messageId);
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.deadline = deadline;
+    }
+
+    public static String key(Long chatId, Integer messageId) {
+        return chatId + ":" + messageId;
+    }
+
+    @Override
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    public Integer getMessageId() { return messageId; }
+    public void setMessageId(Integer messageId) { this.messageId = messageId; }
+
+    public Long getDeadline() { return deadline; }
+    public void setDeadline(Long deadline) { this.deadline = deadline; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
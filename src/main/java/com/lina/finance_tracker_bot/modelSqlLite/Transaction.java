@@ -11,6 +11,11 @@ public class Transaction {
     private Long id;
 
     private Double amount;
+
+    // сумма в копейках: по ней считаются итоги (amount оставлен для совместимости)
+    @Column(name = "amount_minor")
+    private Long amountMinor;
+
     private String category;
 
     @Enumerated(EnumType.STRING)
@@ -28,7 +33,8 @@ public class Transaction {
     public Transaction() {}
 
     public Transaction(Double amount, String category, TransactionType type, User user) {
-        this.amount = amount;
+        this.amountMinor = Money.toMinor(amount);
+        this.amount = Money.toAmount(amountMinor);
         this.category = category;
         this.type = type;
         this.user = user;
@@ -41,6 +47,9 @@ public class Transaction {
     public Double getAmount() { return amount; }
     public void setAmount(Double amount) { this.amount = amount; }
 
+    public Long getAmountMinor() { return amountMinor; }
+    public void setAmountMinor(Long amountMinor) { this.amountMinor = amountMinor; }
+
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
 
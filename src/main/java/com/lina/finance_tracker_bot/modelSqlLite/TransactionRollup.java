@@ -0,0 +1,64 @@
+package com.lina.finance_tracker_bot.modelSqlLite;
+
+import jakarta.persistence.*;
+
+/**
+ * Предагрегированная запись для отчётов: сумма и количество операций
+ * пользователя за один день по типу и нормализованной категории.
+ * Обновляется вместе с транзакциями, поэтому отчёт читает не всю историю,
+ * а только несколько сотен таких строк.
+ * Уникальный индекс по ключу создаётся в schema.sql (Hibernate не создаёт индексы в SQLite).
+ */
+@Entity
+@Table(name = "transaction_rollups")
+public class TransactionRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Enumerated(EnumType.STRING)
+    private TransactionType type;
+
+    private String category;
+
+    // день в виде LocalDate.toEpochDay()
+    private Long day;
+
+    // сумма в рублях: больше не пишется, колонка нужна только для миграции в total_minor (schema.sql)
+    private Double total;
+
+    // сумма в копейках
+    @Column(name = "total_minor")
+    private Long totalMinor;
+
+    private Long operations;
+
+    public TransactionRollup() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getChatId() { return chatId; }
+    public void setChatId(Long chatId) { this.chatId = chatId; }
+
+    public TransactionType getType() { return type; }
+    public void setType(TransactionType type) { this.type = type; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public Long getDay() { return day; }
+    public void setDay(Long day) { this.day = day; }
+
+    public Double getTotal() { return total; }
+    public void setTotal(Double total) { this.total = total; }
+
+    public Long getTotalMinor() { return totalMinor; }
+    public void setTotalMinor(Long totalMinor) { this.totalMinor = totalMinor; }
+
+    public Long getOperations() { return operations; }
+    public void setOperations(Long operations) { this.operations = operations; }
+}
@@ -0,0 +1,11 @@
+package com.lina.finance_tracker_bot.repository;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+
+/**
+ * Лёгкая проекция для отчётов: сумма в копейках и количество операций
+ * по типу и категории (категория в нижнем регистре).
+ * Заполняется прямо из GROUP BY-запроса, без загрузки сущностей.
+ */
+public record CategoryTotal(TransactionType type, String category, Long totalMinor, Long operations) {
+}
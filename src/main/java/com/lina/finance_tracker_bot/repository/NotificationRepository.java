@@ -12,15 +12,18 @@ import java.util.List;
 /**
  * Репозиторий для работы с уведомлениями в базе данных.
  * Предоставляет методы для поиска, фильтрации и удаления уведомлений.
+ * Поиск идёт в транзакции только для чтения (пул читателей в режиме WAL).
  */
+@Transactional(readOnly = true)
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
 
     // Этот метод использоваться для отображения АКТИВНЫХ уведомлений
     @Query("SELECT n FROM Notification n WHERE n.user.chatId = :chatId AND n.notificationTime > :currentTime ORDER BY n.notificationTime ASC")
     List<Notification> findActiveByUserChatIdOrderByNotificationTimeAsc(@Param("chatId") Long chatId, @Param("currentTime") LocalTime currentTime);
 
-    @Query("SELECT n FROM Notification n WHERE n.notificationTime = :currentTime")
-    List<Notification> findNotificationsByTime(@Param("currentTime") LocalTime currentTime);
+    // Все уведомления вместе с пользователем (для построения расписания при старте)
+    @Query("SELECT n FROM Notification n JOIN FETCH n.user")
+    List<Notification> findAllWithUser();
 
     @Query("SELECT n FROM Notification n WHERE n.user.chatId = :chatId ORDER BY n.createdAt DESC LIMIT :limit")
     List<Notification> findTopByUserChatIdOrderByCreatedAtDesc(@Param("chatId") Long chatId, @Param("limit") int limit);
@@ -0,0 +1,37 @@
+package com.lina.finance_tracker_bot.repository;
+
+import com.lina.finance_tracker_bot.modelSqlLite.ScheduledDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Репозиторий запланированных удалений сообщений.
+ * Записи добавляются и удаляются пачками из MessageDeletion.
+ */
+public interface ScheduledDeletionRepository extends JpaRepository<ScheduledDeletion, String> {
+
+    // Добавляет запись или обновляет срок, если сообщение уже в расписании: повтор ключа не ломает пачку
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO scheduled_deletions (id, chat_id, message_id, deadline) " +
+            "VALUES (:id, :chatId, :messageId, :deadline) " +
+            "ON CONFLICT(id) DO UPDATE SET deadline = excluded.deadline",
+            nativeQuery = true)
+    void upsert(@Param("id") String id,
+                @Param("chatId") Long chatId,
+                @Param("messageId") Integer messageId,
+                @Param("deadline") Long deadline);
+
+    // Пачка записей в одной транзакции
+    @Transactional
+    default void upsertAll(List<ScheduledDeletion> deletions) {
+        for (ScheduledDeletion deletion : deletions) {
+            upsert(deletion.getId(), deletion.getChatId(), deletion.getMessageId(), deletion.getDeadline());
+        }
+    }
+}
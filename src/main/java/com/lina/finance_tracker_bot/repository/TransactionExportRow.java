@@ -0,0 +1,13 @@
+package com.lina.finance_tracker_bot.repository;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка истории в CSV: только нужные поля транзакции (выгрузка и импорт).
+ * При выгрузке заполняется прямо из запроса и не попадает в контекст персистентности,
+ * поэтому чтение всей истории не накапливает объекты в памяти.
+ */
+public record TransactionExportRow(LocalDateTime date, TransactionType type, String category, Long amountMinor) {
+}
@@ -1,30 +1,56 @@
     package com.lina.finance_tracker_bot.repository;
 
     import com.lina.finance_tracker_bot.modelSqlLite.Transaction;
+    import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
     import org.springframework.data.jpa.repository.JpaRepository;
     import org.springframework.data.jpa.repository.Query;
+    import org.springframework.data.jpa.repository.QueryHints;
     import org.springframework.data.repository.query.Param;
+    import org.springframework.transaction.annotation.Transactional;
     import java.time.LocalDateTime;
     import java.util.List;
     import java.util.Optional;
+    import java.util.stream.Stream;
+    import jakarta.persistence.QueryHint;
+    import org.hibernate.jpa.HibernateHints;
     /**
      * Репозиторий для работы с транзакциями в базе данных.
      * Предоставляет методы для поиска транзакций по пользователю и временным периодам.
+     * Запросы идут в транзакции только для чтения (пул читателей в режиме WAL).
      */
+    @Transactional(readOnly = true)
     public interface TransactionRepository extends JpaRepository<Transaction, Long> {
         List<Transaction> findByUserChatId(Long chatId);
 
-        // Получить первую транзакцию пользователя (для определения даты начала)
-        Optional<Transaction> findFirstByUserChatIdOrderByDateAsc(Long chatId);
+        // Дата первой транзакции пользователя без загрузки сущности
+        @Query("SELECT MIN(t.date) FROM Transaction t WHERE t.user.chatId = :chatId")
+        Optional<LocalDateTime> findFirstDateByUserChatId(@Param("chatId") Long chatId);
 
-        // Транзакции за определенный период
-        @Query("SELECT t FROM Transaction t WHERE t.user.chatId = :chatId AND t.date BETWEEN :startDate AND :endDate")
-        List<Transaction> findByUserAndDateRange(@Param("chatId") Long chatId,
-                                                 @Param("startDate") LocalDateTime startDate,
-                                                 @Param("endDate") LocalDateTime endDate);
+        // Суммы по типу и категории за период [startDate, endDate)
+        @Query("SELECT new com.lina.finance_tracker_bot.repository.CategoryTotal(t.type, lower(t.category), SUM(t.amountMinor), COUNT(t)) " +
+                "FROM Transaction t WHERE t.user.chatId = :chatId AND t.date >= :startDate AND t.date < :endDate " +
+                "GROUP BY t.type, lower(t.category)")
+        List<CategoryTotal> sumByTypeAndCategoryInRange(@Param("chatId") Long chatId,
+                                                        @Param("startDate") LocalDateTime startDate,
+                                                        @Param("endDate") LocalDateTime endDate);
 
-        // Транзакции за сегодня (с 00:00 до сейчас)
-        @Query("SELECT t FROM Transaction t WHERE t.user.chatId = :chatId AND t.date >= :startOfDay")
-        List<Transaction> findTodayTransactions(@Param("chatId") Long chatId,
-                                                @Param("startOfDay") LocalDateTime startOfDay);
-    }
\ No newline at end of file
+        // Вся история пользователя по порядку для выгрузки: курсор вперёд без загрузки сущностей,
+        // поток нужно читать внутри транзакции и закрыть
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new com.lina.finance_tracker_bot.repository.TransactionExportRow(t.date, t.type, t.category, t.amountMinor) " +
+                "FROM Transaction t WHERE t.user.chatId = :chatId ORDER BY t.id")
+        Stream<TransactionExportRow> streamForExport(@Param("chatId") Long chatId);
+
+        // Уникальные категории пользователя в порядке первого появления
+        @Query("SELECT lower(t.category) FROM Transaction t WHERE t.user.chatId = :chatId " +
+                "GROUP BY lower(t.category) ORDER BY MIN(t.id)")
+        List<String> findCategories(@Param("chatId") Long chatId);
+
+        // Уникальные категории пользователя указанного типа
+        @Query("SELECT lower(t.category) FROM Transaction t WHERE t.user.chatId = :chatId AND t.type = :type " +
+                "GROUP BY lower(t.category) ORDER BY MIN(t.id)")
+        List<String> findCategoriesByType(@Param("chatId") Long chatId, @Param("type") TransactionType type);
+    }
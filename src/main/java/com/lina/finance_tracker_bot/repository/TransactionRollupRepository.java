@@ -0,0 +1,53 @@
+package com.lina.finance_tracker_bot.repository;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Репозиторий дневных агрегатов транзакций.
+ * Строки обновляются инкрементально при добавлении и удалении транзакций.
+ * Запросы идут в транзакции только для чтения (пул читателей в режиме WAL),
+ * изменяющие методы — в пишущей.
+ */
+@Transactional(readOnly = true)
+public interface TransactionRollupRepository extends JpaRepository<TransactionRollup, Long> {
+
+    // Суммы по типу и категории начиная с указанного дня (epoch day) включительно
+    @Query("SELECT new com.lina.finance_tracker_bot.repository.CategoryTotal(r.type, r.category, SUM(r.totalMinor), SUM(r.operations)) " +
+            "FROM TransactionRollup r WHERE r.chatId = :chatId AND r.day >= :fromDay GROUP BY r.type, r.category")
+    List<CategoryTotal> sumByTypeAndCategory(@Param("chatId") Long chatId, @Param("fromDay") long fromDay);
+
+    // Все агрегаты чата по дням: из них строятся накопленные суммы для отчётов за период
+    List<TransactionRollup> findByChatIdOrderByDayAsc(Long chatId);
+
+    // Добавляет операции (сумма в копейках) к агрегату дня, создавая строку при первом обращении
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO transaction_rollups (chat_id, type, category, day, total_minor, operations) " +
+            "VALUES (:chatId, :type, :category, :day, :amountMinor, :operations) " +
+            "ON CONFLICT(chat_id, type, category, day) DO UPDATE SET " +
+            "total_minor = total_minor + excluded.total_minor, operations = operations + excluded.operations",
+            nativeQuery = true)
+    void increment(@Param("chatId") Long chatId,
+                   @Param("type") String type,
+                   @Param("category") String category,
+                   @Param("day") Long day,
+                   @Param("amountMinor") long amountMinor,
+                   @Param("operations") long operations);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TransactionRollup r WHERE r.chatId = :chatId")
+    void deleteByChatId(@Param("chatId") Long chatId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TransactionRollup r WHERE r.chatId = :chatId AND r.category = :category")
+    void deleteByChatIdAndCategory(@Param("chatId") Long chatId, @Param("category") String category);
+}
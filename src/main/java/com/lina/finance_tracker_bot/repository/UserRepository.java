@@ -2,11 +2,26 @@ package com.lina.finance_tracker_bot.repository;
 
 import com.lina.finance_tracker_bot.modelSqlLite.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.Optional;
 /**
  * Репозиторий для работы с пользователями в базе данных.
  * Предоставляет методы для поиска пользователей по идентификатору чата.
+ * Поиск идёт в транзакции только для чтения (пул читателей в режиме WAL).
  */
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByChatId(Long chatId);
-}
\ No newline at end of file
+
+    // Создаёт пользователя, если его ещё нет; при гонке второй INSERT просто ничего не делает
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO users (chat_id, username) VALUES (:chatId, :username) " +
+            "ON CONFLICT(chat_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("chatId") Long chatId, @Param("username") String username);
+}
@@ -1,5 +1,6 @@
 package com.lina.finance_tracker_bot.services;
 
+import com.lina.finance_tracker_bot.modelSqlLite.Money;
 import com.lina.finance_tracker_bot.modelSqlLite.Transaction;
 import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
 import com.lina.finance_tracker_bot.modelSqlLite.User;
@@ -12,10 +13,30 @@ import java.util.List;
 public class AddService {
     private final TransactionRepository transactionRepository;
     private final UserInfoService userService;
-
-    public AddService(TransactionRepository transactionRepository, UserInfoService userService) {
+    private final TransactionRollupService rollupService;
+    private final DatabaseWriter databaseWriter;
+    private final ReportCache reportCache;
+    private final DailyBucketIndex bucketIndex;
+
+    public AddService(TransactionRepository transactionRepository,
+                      UserInfoService userService,
+                      TransactionRollupService rollupService,
+                      DatabaseWriter databaseWriter,
+                      ReportCache reportCache,
+                      DailyBucketIndex bucketIndex) {
         this.transactionRepository = transactionRepository;
         this.userService = userService;
+        this.rollupService = rollupService;
+        this.databaseWriter = databaseWriter;
+        this.reportCache = reportCache;
+        this.bucketIndex = bucketIndex;
+    }
+
+    // Обновляет производные от истории данные после коммита транзакции
+    private void afterSave(Long chatId, Transaction saved) {
+        reportCache.invalidate(chatId);
+        bucketIndex.add(chatId, saved.getType(), saved.getCategory(),
+                saved.getDate().toLocalDate().toEpochDay(), saved.getAmountMinor());
     }
 
     /**
@@ -53,25 +74,18 @@ public class AddService {
             // Нормализуем категорию (в нижний регистр)
             String normalizedCategory = category.toLowerCase();
 
-            // Сохраняем новую транзакцию (расход)
-            Transaction transaction = new Transaction(amount, normalizedCategory, TransactionType.EXPENSE, user);
-            transactionRepository.save(transaction);
-
-            // Получаем все транзакции пользователя
-            List<Transaction> transactions = transactionRepository.findByUserChatId(chatId);
+            // Сохраняем новую транзакцию (расход); ответ уходит только после коммита
+            Transaction saved = databaseWriter.writeGrouped(() -> rollupService.save(chatId,
+                    new Transaction(amount, normalizedCategory, TransactionType.EXPENSE, user)));
+            afterSave(chatId, saved);
 
-            // Собираем уникальные категории расходов
-            java.util.Set<String> expenseCategories = new java.util.HashSet<>();
-            for (Transaction t : transactions) {
-                if (t.getType() == TransactionType.EXPENSE) {
-                    expenseCategories.add(t.getCategory().toLowerCase());
-                }
-            }
+            // Уникальные категории расходов (DISTINCT считает SQLite)
+            List<String> expenseCategories = transactionRepository.findCategoriesByType(chatId, TransactionType.EXPENSE);
 
             // Формируем ответ пользователю
             StringBuilder sb = new StringBuilder();
             sb.append("✅ 💸 Расход добавлен: ")
-                    .append(String.format("%.2f", amount))
+                    .append(Money.format(Money.toMinor(amount)))
                     .append(" руб. (")
                     .append(capitalize(normalizedCategory))
                     .append(")\n\n");
@@ -102,18 +116,13 @@ public class AddService {
         try {
             User user = userService.getOrCreateUser(chatId, username);
             String normalizedSource = source.toLowerCase();
-          Transaction transaction = new Transaction(amount, normalizedSource, TransactionType.INCOME, user);
-            transactionRepository.save(transaction);
-      List<Transaction> transactions = transactionRepository.findByUserChatId(chatId);
-        java.util.Set<String> incomeCategories = new java.util.HashSet<>();
-            for (Transaction t : transactions) {
-                if (t.getType() == TransactionType.INCOME) {
-                    incomeCategories.add(t.getCategory().toLowerCase());
-                }
-            }
+            Transaction saved = databaseWriter.writeGrouped(() -> rollupService.save(chatId,
+                    new Transaction(amount, normalizedSource, TransactionType.INCOME, user)));
+            afterSave(chatId, saved);
+            List<String> incomeCategories = transactionRepository.findCategoriesByType(chatId, TransactionType.INCOME);
 
             StringBuilder sb = new StringBuilder();
-            StringBuilder append = sb.append("✅ 💰 Доход добавлен: ").append(String.format("%.2f", amount))
+            StringBuilder append = sb.append("✅ 💰 Доход добавлен: ").append(Money.format(Money.toMinor(amount)))
                     .append(" руб. (")
                     .append(capitalize(normalizedSource))
                     .append(")\n\n");
@@ -0,0 +1,112 @@
+package com.lina.finance_tracker_bot.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Журнал изменений для инкрементальных бэкапов.
+ * Триггеры SQLite записывают каждую вставку и удаление в таблицах пользователей,
+ * транзакций и уведомлений в таблицу backup_changes: вставка хранит строку целиком (JSON),
+ * удаление — только id. Номер изменения (seq) растёт монотонно и не переиспользуется,
+ * поэтому по номеру из sqlite_sequence видно, какие изменения уже вошли в снимок.
+ */
+@Component
+public class BackupChangeLog {
+
+    static final String TABLE = "backup_changes";
+    static final List<String> TRACKED_TABLES = List.of("users", "transactions", "notifications");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BackupChangeLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Создаёт таблицу журнала и пересоздаёт триггеры по текущим колонкам таблиц
+     */
+    public void install() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "table_name TEXT NOT NULL, op TEXT NOT NULL, row_id INTEGER NOT NULL, payload TEXT)");
+        for (String table : TRACKED_TABLES) {
+            List<String> columns = jdbcTemplate.queryForList(
+                    "SELECT name FROM pragma_table_info(?)", String.class, table);
+            String row = columns.stream()
+                    .map(column -> "'" + column + "', NEW." + column)
+                    .collect(Collectors.joining(", ", "json_object(", ")"));
+
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + table + "_backup_insert");
+            jdbcTemplate.execute("CREATE TRIGGER " + table + "_backup_insert AFTER INSERT ON " + table +
+                    " BEGIN INSERT INTO " + TABLE + " (table_name, op, row_id, payload)" +
+                    " VALUES ('" + table + "', 'I', NEW.id, " + row + "); END");
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + table + "_backup_delete");
+            jdbcTemplate.execute("CREATE TRIGGER " + table + "_backup_delete AFTER DELETE ON " + table +
+                    " BEGIN INSERT INTO " + TABLE + " (table_name, op, row_id)" +
+                    " VALUES ('" + table + "', 'D', OLD.id); END");
+        }
+    }
+
+    /**
+     * Убирает триггеры и журнал, когда инкрементальные бэкапы выключены
+     */
+    public void uninstall() {
+        for (String table : TRACKED_TABLES) {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + table + "_backup_insert");
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + table + "_backup_delete");
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + TABLE);
+    }
+
+    /**
+     * @return изменения, ещё не удалённые из журнала, по порядку
+     */
+    public List<Change> readAll() {
+        return jdbcTemplate.query(
+                "SELECT seq, table_name, op, row_id, payload FROM " + TABLE + " ORDER BY seq",
+                (rs, rowNum) -> new Change(rs.getLong("seq"), rs.getString("table_name"),
+                        rs.getString("op"), rs.getLong("row_id"), rs.getString("payload")));
+    }
+
+    /**
+     * Удаляет из журнала изменения, которые уже есть в отправленном снимке или дельте
+     * @param upToSeq последний отправленный номер изменения включительно
+     */
+    public void trim(long upToSeq) {
+        jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE seq <= ?", upToSeq);
+    }
+
+    /**
+     * Номер последнего изменения, вошедшего в БД (снимок или живую)
+     * @param connection соединение с БД
+     * @return номер изменения или 0, если журнал ещё пуст
+     */
+    static long readCheckpoint(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT seq FROM sqlite_sequence WHERE name = ?")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            // в БД без таблиц AUTOINCREMENT нет и sqlite_sequence
+            if (e.getMessage() != null && e.getMessage().contains("no such table")) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Запись журнала: op = I (вставка, row — строка в JSON) или D (удаление по rowId)
+     */
+    public record Change(long seq, String table, String op, long rowId, String row) {
+    }
+}
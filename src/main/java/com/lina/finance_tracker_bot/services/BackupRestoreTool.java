@@ -0,0 +1,187 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Восстановление БД из полного снимка и дельт инкрементального бэкапа.
+ * Снимок копируется в новый файл, затем изменения из дельт, сделанные после снимка,
+ * применяются по порядку номеров. Дневные агрегаты очищаются и пересчитываются
+ * приложением при следующем запуске.
+ *
+ * Снимок и дельты принимаются в том виде, в каком они пришли в Telegram (сжатыми gzip).
+ *
+ * Запуск: ./gradlew restoreBackup --args="finance_bot_backup.db.gz restored.db finance_bot_delta_1-40.jsonl.gz ..."
+ */
+public class BackupRestoreTool {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Использование: BackupRestoreTool <снимок.db> <результат.db> [дельта.jsonl.gz ...]");
+            System.exit(1);
+        }
+        Path snapshot = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        List<Path> deltas = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            deltas.add(Path.of(args[i]));
+        }
+        restore(snapshot, target, deltas);
+    }
+
+    /**
+     * Собирает БД из снимка и дельт
+     * @param snapshot полный снимок (.db или .db.gz)
+     * @param target новый файл БД (не должен существовать)
+     * @param deltas файлы дельт в любом порядке
+     */
+    public static void restore(Path snapshot, Path target, List<Path> deltas) throws IOException, SQLException {
+        if (snapshot.getFileName().toString().endsWith(".gz")) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot))) {
+                Files.copy(in, target);
+            }
+        } else {
+            Files.copy(snapshot, target);
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + target)) {
+            long checkpoint = BackupChangeLog.readCheckpoint(connection);
+
+            // изменения из всех дельт по номеру; повторы из пересекающихся дельт схлопываются
+            Map<Long, JsonNode> changes = new TreeMap<>();
+            for (Path delta : deltas) {
+                readDelta(delta, objectMapper, changes);
+            }
+            changes.keySet().removeIf(seq -> seq <= checkpoint);
+
+            connection.setAutoCommit(false);
+            long expected = checkpoint + 1;
+            for (Map.Entry<Long, JsonNode> entry : changes.entrySet()) {
+                if (entry.getKey() != expected) {
+                    System.err.println("⚠️ Пропущены изменения " + expected + "-" + (entry.getKey() - 1) +
+                            ": не хватает дельты");
+                }
+                apply(connection, entry.getValue());
+                expected = entry.getKey() + 1;
+            }
+            try (Statement statement = connection.createStatement()) {
+                // в снимке полного режима журнала нет: uninstall() удаляет таблицу
+                if (tableExists(connection, BackupChangeLog.TABLE)) {
+                    statement.executeUpdate("DELETE FROM " + BackupChangeLog.TABLE);
+                }
+                if (tableExists(connection, "transaction_rollups")) {
+                    statement.executeUpdate("DELETE FROM transaction_rollups");
+                }
+            }
+            connection.commit();
+
+            System.out.println("✅ Восстановлено: снимок до изменения " + checkpoint +
+                    ", применено изменений: " + changes.size());
+        }
+    }
+
+    private static void readDelta(Path delta, ObjectMapper objectMapper, Map<Long, JsonNode> changes) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(delta)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    JsonNode change = objectMapper.readTree(line);
+                    changes.put(change.get("seq").asLong(), change);
+                }
+            }
+        }
+    }
+
+    private static void apply(Connection connection, JsonNode change) throws SQLException {
+        String table = change.get("table").asText();
+        if (!BackupChangeLog.TRACKED_TABLES.contains(table)) {
+            throw new SQLException("Неизвестная таблица в дельте: " + table);
+        }
+        if ("D".equals(change.get("op").asText())) {
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+                statement.setLong(1, change.get("id").asLong());
+                statement.executeUpdate();
+            }
+            return;
+        }
+
+        JsonNode row = change.get("row");
+        Set<String> knownColumns = columns(connection, table);
+        List<String> names = new ArrayList<>();
+        Iterator<String> fields = row.fieldNames();
+        while (fields.hasNext()) {
+            String name = fields.next();
+            // колонки, которых нет в снимке, не вставляем: имя попадает в SQL
+            if (knownColumns.contains(name)) {
+                names.add(name);
+            }
+        }
+        names.sort(Comparator.naturalOrder());
+
+        String sql = "INSERT OR REPLACE INTO " + table + " (" + String.join(", ", names) + ") VALUES (" +
+                String.join(", ", names.stream().map(name -> "?").toList()) + ")";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < names.size(); i++) {
+                JsonNode value = row.get(names.get(i));
+                if (value == null || value.isNull()) {
+                    statement.setObject(i + 1, null);
+                } else if (value.isIntegralNumber()) {
+                    statement.setLong(i + 1, value.asLong());
+                } else if (value.isNumber()) {
+                    statement.setDouble(i + 1, value.asDouble());
+                } else {
+                    statement.setString(i + 1, value.asText());
+                }
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static Set<String> columns(Connection connection, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT name FROM pragma_table_info(?)")) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1));
+                }
+            }
+        }
+        return columns;
+    }
+}
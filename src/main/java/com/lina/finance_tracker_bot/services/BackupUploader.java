@@ -0,0 +1,207 @@
+package com.lina.finance_tracker_bot.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая отправка бэкапов в Telegram-чат администратора (и выгрузок в чат пользователя).
+ * Данные сжимаются gzip в отдельном потоке и через канал ограниченного размера
+ * сразу уходят в запрос отправки документа: сжатая копия на диск не пишется,
+ * а память ограничена буфером канала. Объём до и после сжатия и время отправки
+ * пишутся в метрики bot.backup.bytes и bot.backup.upload с тегом kind.
+ */
+@Component
+public class BackupUploader {
+
+    // Размер канала между сжатием и отправкой
+    private static final int PIPE_BUFFER_BYTES = 64 * 1024;
+
+    @Value("${backup.admin-chat-id}")
+    private String adminChatId; // ID чата Telegram для отправки бэкапов
+
+    // Бот для отправки файлов в Telegram; берётся при отправке, т.к. бот сам зависит от обработчиков с выгрузкой
+    private final ObjectProvider<TelegramLongPollingBot> bot;
+    private final MeterRegistry meterRegistry;
+    // по потоку сжатия на отправку: выгрузки пользователей не ждут друг друга и бэкапы
+    private final ExecutorService compressExecutor = Executors.newCachedThreadPool();
+
+    public BackupUploader(ObjectProvider<TelegramLongPollingBot> bot, MeterRegistry meterRegistry) {
+        this.bot = bot;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Содержимое бэкапа, которое записывается в сжимающий поток
+     */
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Сжимает содержимое и отправляет его документом администратору
+     * @param kind вид бэкапа для метрик (snapshot, delta)
+     * @param fileName имя файла в Telegram, с расширением .gz
+     * @param caption подпись к документу
+     * @param body содержимое бэкапа
+     * @return true, если документ отправлен целиком
+     */
+    public boolean upload(String kind, String fileName, String caption, Body body) {
+        return upload(adminChatId, kind, fileName, caption, body);
+    }
+
+    /**
+     * Сжимает содержимое и отправляет его документом в указанный чат
+     * @param chatId ID чата получателя
+     * @param kind вид отправки для метрик (snapshot, delta, export)
+     * @param fileName имя файла в Telegram, с расширением .gz
+     * @param caption подпись к документу
+     * @param body содержимое файла
+     * @return true, если документ отправлен целиком
+     */
+    public boolean upload(String chatId, String kind, String fileName, String caption, Body body) {
+        PipedInputStream pipeIn = new PipedInputStream(PIPE_BUFFER_BYTES);
+        ProducerAwareInputStream in = new ProducerAwareInputStream(pipeIn);
+        CountingOutputStream raw;
+        CountingOutputStream compressed;
+        try {
+            compressed = new CountingOutputStream(new PipedOutputStream(pipeIn));
+            raw = new CountingOutputStream(new GZIPOutputStream(compressed, PIPE_BUFFER_BYTES));
+        } catch (IOException e) {
+            System.err.println("Ошибка подготовки бэкапа: " + e.getMessage());
+            return false;
+        }
+
+        Future<?> producer = compressExecutor.submit(() -> {
+            try {
+                body.writeTo(raw);
+            } catch (IOException | RuntimeException e) {
+                // читатель увидит ошибку вместо обрезанного файла
+                in.producerFailed(e);
+            } finally {
+                closeQuietly(raw);
+            }
+        });
+
+        long start = System.nanoTime();
+        try (in) {
+            SendDocument document = new SendDocument();
+            document.setChatId(chatId);
+            document.setDocument(new InputFile(in, fileName));
+            document.setCaption(caption);
+            bot.getObject().execute(document);
+            producer.get();
+            if (in.failure != null) {
+                throw new IOException(in.failure);
+            }
+        } catch (TelegramApiException | IOException | ExecutionException e) {
+            System.err.println("Ошибка отправки бэкапа: " + e.getMessage());
+            producer.cancel(true);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            producer.cancel(true);
+            return false;
+        }
+
+        Timer.builder("bot.backup.upload").tag("kind", kind).register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        Counter.builder("bot.backup.bytes").tag("kind", kind).tag("stage", "raw").baseUnit("bytes")
+                .register(meterRegistry).increment(raw.count);
+        Counter.builder("bot.backup.bytes").tag("kind", kind).tag("stage", "compressed").baseUnit("bytes")
+                .register(meterRegistry).increment(compressed.count);
+        return true;
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // читатель уже закрыл канал
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compressExecutor.shutdownNow();
+    }
+
+    /**
+     * Считает записанные байты
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private volatile long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Канал, который на конце данных сообщает об ошибке сжатия:
+     * поток сжатия живёт в пуле и после ошибки просто закрывает канал
+     */
+    private static final class ProducerAwareInputStream extends FilterInputStream {
+        private volatile Exception failure;
+
+        ProducerAwareInputStream(InputStream in) {
+            super(in);
+        }
+
+        void producerFailed(Exception e) {
+            failure = e;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return checkEnd(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return checkEnd(super.read(b, off, len));
+        }
+
+        private int checkEnd(int result) throws IOException {
+            if (result < 0 && failure != null) {
+                throw new IOException("Ошибка сжатия бэкапа", failure);
+            }
+            return result;
+        }
+    }
+}
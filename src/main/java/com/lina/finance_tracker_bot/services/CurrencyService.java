@@ -1,24 +1,64 @@
 package com.lina.finance_tracker_bot.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lina.finance_tracker_bot.exeptions.FinanceTrackerException;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
- * Сервис для работы с курсами валют
+ * Сервис для работы с курсами валют.
+ * Курсы ЦБ меняются раз в день, поэтому ответ ЦБ разбирается один раз
+ * и хранится в памяти: кэш обновляется в фоне до истечения срока,
+ * одновременные запросы ждут одну общую загрузку, а при недоступности ЦБ
+ * пользователю сразу отдаётся последний известный курс.
  */
 @Service
 public class CurrencyService {
 
+    // Как долго ждать первой загрузки, если в кэше ещё ничего нет
+    private static final long FIRST_LOAD_TIMEOUT_SECONDS = 10;
+    // Не чаще одной повторной попытки за это время после ошибки
+    private static final long RETRY_AFTER_FAILURE_MS = TimeUnit.MINUTES.toMillis(1);
+
     @Autowired
     private CbrClient cbrClient;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${cbr.rates.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    private final AtomicReference<RatesSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<CompletableFuture<RatesSnapshot>> inFlight = new AtomicReference<>();
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile long lastFailureAt;
+
+    /**
+     * Загружает курсы при старте и запускает фоновое обновление
+     * немного раньше истечения срока кэша
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRefresh() {
+        long refreshMs = Math.max(1, TimeUnit.MINUTES.toMillis(ttlMinutes) * 9 / 10);
+        refreshExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Получает курс указанной валюты
      * @param currency код валюты (USD, EUR, CNY)
@@ -48,14 +88,7 @@ public class CurrencyService {
      * @throws FinanceTrackerException если произошла ошибка при получении или парсинге
      */
     public String getUSDRate() throws FinanceTrackerException {
-        try {
-            String json = cbrClient.getCurrencyRatesJson();
-            JsonNode root = objectMapper.readTree(json);
-            JsonNode usdNode = root.path("Valute").path("USD");
-            return usdNode.path("Value").asText() + " руб.";
-        } catch (Exception e) {
-            throw new FinanceTrackerException("Ошибка парсинга USD курса: " + e.getMessage(), e);
-        }
+        return rateOf("USD");
     }
 
     /**
@@ -64,14 +97,7 @@ public class CurrencyService {
      * @throws FinanceTrackerException если произошла ошибка при получении или парсинге
      */
     public String getEURRate() throws FinanceTrackerException {
-        try {
-            String json = cbrClient.getCurrencyRatesJson();
-            JsonNode root = objectMapper.readTree(json);
-            JsonNode eurNode = root.path("Valute").path("EUR");
-            return eurNode.path("Value").asText() + " руб.";
-        } catch (Exception e) {
-            throw new FinanceTrackerException("Ошибка парсинга EUR курса: " + e.getMessage(), e);
-        }
+        return rateOf("EUR");
     }
 
     /**
@@ -80,13 +106,106 @@ public class CurrencyService {
      * @throws FinanceTrackerException если произошла ошибка при получении или парсинге
      */
     public String getCNYRate() throws FinanceTrackerException {
+        return rateOf("CNY");
+    }
+
+    private String rateOf(String code) throws FinanceTrackerException {
+        String value = currentRates().values().get(code);
+        if (value == null) {
+            throw new FinanceTrackerException("Курс " + code + " не найден в ответе ЦБ", null);
+        }
+        return value + " руб.";
+    }
+
+    /**
+     * Возвращает курсы из кэша. Устаревший кэш отдаётся сразу, а обновление
+     * запускается в фоне; ждать приходится только если курсов ещё нет совсем.
+     */
+    private RatesSnapshot currentRates() throws FinanceTrackerException {
+        RatesSnapshot current = snapshot.get();
+        if (current != null) {
+            if (current.isExpired(ttlMinutes) && System.currentTimeMillis() - lastFailureAt > RETRY_AFTER_FAILURE_MS) {
+                refresh();
+            }
+            return current;
+        }
+        try {
+            return refresh().get(FIRST_LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new FinanceTrackerException("Ошибка получения курсов: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new FinanceTrackerException("ЦБ не ответил вовремя", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FinanceTrackerException("Загрузка курсов прервана", e);
+        }
+    }
+
+    /**
+     * Запускает загрузку курсов, если она ещё не идёт.
+     * Все одновременные вызовы получают одну и ту же загрузку.
+     */
+    private CompletableFuture<RatesSnapshot> refresh() {
+        while (true) {
+            CompletableFuture<RatesSnapshot> running = inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<RatesSnapshot> created = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, created)) {
+                refreshExecutor.execute(() -> load(created));
+                return created;
+            }
+        }
+    }
+
+    private void load(CompletableFuture<RatesSnapshot> future) {
         try {
-            String json = cbrClient.getCurrencyRatesJson();
-            JsonNode root = objectMapper.readTree(json);
-            JsonNode cnyNode = root.path("Valute").path("CNY");
-            return cnyNode.path("Value").asText() + " руб.";
-        } catch (JsonProcessingException e) {
-            throw new FinanceTrackerException("Ошибка парсинга CNY курса: " + e.getMessage(), e);
+            RatesSnapshot loaded = parse(cbrClient.getCurrencyRatesJson());
+            snapshot.set(loaded);
+            inFlight.set(null);
+            future.complete(loaded);
+        } catch (Exception e) {
+            lastFailureAt = System.currentTimeMillis();
+            System.err.println("Ошибка обновления курсов валют: " + e.getMessage());
+            inFlight.set(null);
+            future.completeExceptionally(e);
+        }
+    }
+
+    // Разбирает ответ ЦБ целиком: код валюты -> курс
+    private RatesSnapshot parse(String json) throws FinanceTrackerException {
+        if (json == null) {
+            throw new FinanceTrackerException("Пустой ответ ЦБ", null);
+        }
+        try {
+            JsonNode valutes = objectMapper.readTree(json).path("Valute");
+            Map<String, String> values = new HashMap<>();
+            for (Map.Entry<String, JsonNode> field : valutes.properties()) {
+                values.put(field.getKey(), field.getValue().path("Value").asText());
+            }
+            if (values.isEmpty()) {
+                throw new FinanceTrackerException("В ответе ЦБ нет курсов валют", null);
+            }
+            return new RatesSnapshot(Map.copyOf(values), System.currentTimeMillis());
+        } catch (FinanceTrackerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new FinanceTrackerException("Ошибка парсинга курсов: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Разобранные курсы всех валют и время их загрузки
+     */
+    private record RatesSnapshot(Map<String, String> values, long loadedAt) {
+        boolean isExpired(long ttlMinutes) {
+            return System.currentTimeMillis() - loadedAt > TimeUnit.MINUTES.toMillis(ttlMinutes);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionRollup;
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.CategoryTotal;
+import com.lina.finance_tracker_bot.repository.TransactionRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Накопленные суммы по дням для отчётов за произвольный период.
+ * Для каждой пары (тип, категория) чата хранятся дни с операциями по возрастанию
+ * и суммы с начала истории по каждый из них, поэтому сумма за любой период —
+ * разность двух накопленных значений, найденных двоичным поиском: O(log n) на категорию
+ * независимо от длины периода.
+ * Индекс строится из дневных агрегатов при первом отчёте чата, затем дополняется
+ * после каждой добавленной транзакции и сбрасывается при удалениях.
+ * Число чатов в памяти ограничено, давно не запрашивавшиеся вытесняются (LRU).
+ */
+@Component
+public class DailyBucketIndex {
+
+    private final TransactionRollupRepository rollupRepository;
+    private final int maxChats;
+
+    private final LinkedHashMap<Long, ChatBuckets> chats = new LinkedHashMap<>(16, 0.75f, true);
+
+    public DailyBucketIndex(TransactionRollupRepository rollupRepository,
+                            @Value("${bot.report-range.max-chats:1000}") int maxChats) {
+        this.rollupRepository = rollupRepository;
+        this.maxChats = maxChats;
+    }
+
+    /**
+     * Суммы по типу и категории за период
+     * @param chatId ID чата пользователя
+     * @param fromDay первый день периода (epoch day) включительно
+     * @param toDay последний день периода (epoch day) включительно
+     * @return итоги по категориям, в которых были операции за период
+     */
+    public List<CategoryTotal> sumRange(Long chatId, long fromDay, long toDay) {
+        ChatBuckets buckets = bucketsFor(chatId);
+        synchronized (buckets) {
+            List<CategoryTotal> totals = new ArrayList<>();
+            for (Map.Entry<SeriesKey, Series> entry : buckets.series.entrySet()) {
+                Series series = entry.getValue();
+                int to = series.upTo(toDay);
+                int before = series.upTo(fromDay - 1);
+                long operations = series.operationsAt(to) - series.operationsAt(before);
+                if (operations > 0) {
+                    totals.add(new CategoryTotal(entry.getKey().type(), entry.getKey().category(),
+                            series.totalAt(to) - series.totalAt(before), operations));
+                }
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Добавляет сохранённую транзакцию в индекс чата, если он уже построен
+     * @param chatId ID чата пользователя
+     * @param type тип транзакции
+     * @param category категория в нижнем регистре
+     * @param day день транзакции (epoch day)
+     * @param amountMinor сумма в копейках
+     */
+    public void add(Long chatId, TransactionType type, String category, long day, long amountMinor) {
+        ChatBuckets buckets;
+        synchronized (chats) {
+            buckets = chats.get(chatId);
+        }
+        if (buckets == null) {
+            return; // индекс построится из агрегатов при первом отчёте
+        }
+        boolean appended;
+        synchronized (buckets) {
+            appended = buckets.series.computeIfAbsent(new SeriesKey(type, category), k -> new Series())
+                    .append(day, amountMinor, 1);
+        }
+        if (!appended) {
+            // транзакция задним числом: проще перестроить индекс, чем сдвигать накопленные суммы
+            invalidate(chatId);
+        }
+    }
+
+    /**
+     * Сбрасывает индекс чата после удаления транзакций
+     * @param chatId ID чата пользователя
+     */
+    public void invalidate(Long chatId) {
+        synchronized (chats) {
+            chats.remove(chatId);
+        }
+    }
+
+    /**
+     * @return количество чатов с построенным индексом
+     */
+    public int getSize() {
+        synchronized (chats) {
+            return chats.size();
+        }
+    }
+
+    private ChatBuckets bucketsFor(Long chatId) {
+        synchronized (chats) {
+            ChatBuckets buckets = chats.get(chatId);
+            if (buckets != null) {
+                return buckets;
+            }
+        }
+
+        // строится вне блокировки: запросы одного чата идут последовательно в его полосе
+        ChatBuckets buckets = new ChatBuckets();
+        for (TransactionRollup rollup : rollupRepository.findByChatIdOrderByDayAsc(chatId)) {
+            buckets.series.computeIfAbsent(new SeriesKey(rollup.getType(), rollup.getCategory()), k -> new Series())
+                    .append(rollup.getDay(), rollup.getTotalMinor(), rollup.getOperations());
+        }
+
+        synchronized (chats) {
+            chats.put(chatId, buckets);
+            if (chats.size() > maxChats) {
+                chats.remove(chats.keySet().iterator().next());
+            }
+        }
+        return buckets;
+    }
+
+    private static final class ChatBuckets {
+        private final Map<SeriesKey, Series> series = new HashMap<>();
+    }
+
+    private record SeriesKey(TransactionType type, String category) {
+    }
+
+    /**
+     * Дни с операциями по возрастанию и накопленные по них суммы
+     */
+    private static final class Series {
+        private long[] days = new long[8];
+        private long[] totals = new long[8];
+        private long[] operations = new long[8];
+        private int size;
+
+        /**
+         * @return false, если день раньше последнего в серии (дописывать можно только в конец)
+         */
+        boolean append(long day, long amountMinor, long count) {
+            if (size > 0 && days[size - 1] == day) {
+                totals[size - 1] += amountMinor;
+                operations[size - 1] += count;
+                return true;
+            }
+            if (size > 0 && day < days[size - 1]) {
+                return false;
+            }
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                totals = Arrays.copyOf(totals, size * 2);
+                operations = Arrays.copyOf(operations, size * 2);
+            }
+            days[size] = day;
+            totals[size] = totalAt(size - 1) + amountMinor;
+            operations[size] = operationsAt(size - 1) + count;
+            size++;
+            return true;
+        }
+
+        /**
+         * @return индекс последнего дня не позже day или -1
+         */
+        int upTo(long day) {
+            int index = Arrays.binarySearch(days, 0, size, day);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        long totalAt(int index) {
+            return index < 0 ? 0 : totals[index];
+        }
+
+        long operationsAt(int index) {
+            return index < 0 ? 0 : operations[index];
+        }
+    }
+}
@@ -1,87 +1,250 @@
 package com.lina.finance_tracker_bot.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.telegram.telegrambots.bots.TelegramLongPollingBot;
-import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
-import org.telegram.telegrambots.meta.api.objects.InputFile;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.Codes;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Сервис для автоматического создания и отправки резервных копий базы данных.
  * Выполняет бэкап файла БД и отправляет его в Telegram-чат администратора.
+ * Копия снимается онлайн-бэкапом SQLite через отдельное соединение только для чтения:
+ * страницы копируются порциями (с паузой, если БД занята), поэтому запись в БД не останавливается,
+ * а копия всегда согласована. Если данные не изменились с прошлой отправки, копия не отправляется.
+ * В режиме backup.mode=incremental полный снимок отправляется раз в backup.full-interval-hours,
+ * а между снимками — только дельты из {@link BackupChangeLog} (сжатый JSON Lines).
+ * Снимок и дельты сжимаются и отправляются потоком через {@link BackupUploader}.
+ * Снимок и дельты собираются обратно в БД утилитой {@link BackupRestoreTool}.
  */
 @Service
 public class DatabaseBackupService {
 
-    @Value("${backup.admin-chat-id}")
-    private String adminChatId; // ID чата Telegram для отправки бэкапов
+    @Value("${spring.datasource.url}")
+    private String databaseUrl; // Адрес БД, с которой снимается копия
 
-    private final TelegramLongPollingBot bot; // Бот для отправки файлов в Telegram
+    @Value("${backup.pages-per-step:100}")
+    private int pagesPerStep; // Сколько страниц копировать за один шаг
+
+    @Value("${backup.step-pause-ms:10}")
+    private int stepPauseMs; // Пауза между шагами, когда БД занята писателем
+
+    @Value("${backup.mode:full}")
+    private String mode; // full — только полные снимки, incremental — снимки и дельты
+
+    @Value("${backup.full-interval-hours:24}")
+    private long fullIntervalHours; // Как часто отправлять полный снимок в режиме incremental
+
+    private final BackupUploader uploader; // Сжатие и отправка бэкапов в Telegram
+    private final BackupChangeLog changeLog; // Журнал изменений для дельт
+    private final ObjectMapper objectMapper; // Запись дельт в JSON
+
+    private final ExecutorService backupExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean backupRunning = new AtomicBoolean();
+    private volatile byte[] lastSentHash; // Хэш последней отправленной копии
+    private volatile Instant lastFullBackupAt; // Когда отправлен последний полный снимок
+    private boolean changeLogConfigured; // Журнал изменений включён/выключен по режиму
 
-    private static final String DB_FILE = "./finance_bot.db"; // Путь к основному файлу БД
     private static final String BACKUP_FILE = "./finance_bot_backup.db"; // Путь к файлу бэкапа
+    private static final int BUSY_RETRIES = 100; // Сколько раз ждать занятую БД, прежде чем сдаться
 
     /**
      * Конструктор сервиса.
      *
-     * @param bot экземпляр Telegram-бота для отправки файлов
+     * @param uploader отправка бэкапов в Telegram
+     * @param changeLog журнал изменений для инкрементальных бэкапов
+     * @param objectMapper mapper JSON для записи дельт
      */
-    public DatabaseBackupService(TelegramLongPollingBot bot) {
-        this.bot = bot;
+    public DatabaseBackupService(BackupUploader uploader, BackupChangeLog changeLog, ObjectMapper objectMapper) {
+        this.uploader = uploader;
+        this.changeLog = changeLog;
+        this.objectMapper = objectMapper;
     }
 
     /**
      * Запускает автоматическое создание и отправку бэкапа базы данных.
-     * Метод выполняется по расписанию (каждые 30 секунд).
+     * Бэкап выполняется в собственном потоке, чтобы не задерживать другие задачи по расписанию.
      */
     @Scheduled(fixedRate = 3600000) // Каждый час
     public void autoBackup() {
-        createAndSendBackup();
+        if (backupRunning.compareAndSet(false, true)) {
+            try {
+                backupExecutor.execute(() -> {
+                    try {
+                        createAndSendBackup();
+                    } finally {
+                        backupRunning.set(false);
+                    }
+                });
+            } catch (Exception e) {
+                backupRunning.set(false);
+            }
+        }
     }
 
     /**
-     * Создаёт резервную копию базы данных и отправляет её в Telegram.
-     * Если исходный файл БД отсутствует — операция пропускается.
+     * Создаёт резервную копию базы данных и отправляет её в Telegram:
+     * полный снимок или, в режиме incremental между снимками, дельту изменений.
      * При ошибках вывода записывает сообщение в системный err.
      */
-    public void createAndSendBackup() {
+    public synchronized void createAndSendBackup() {
         try {
-            File originalDb = new File(DB_FILE);
-            if (!originalDb.exists()) return;
-
-            Files.copy(originalDb.toPath(), new File(BACKUP_FILE).toPath(),
-                    StandardCopyOption.REPLACE_EXISTING);
-            sendBackupToTelegram();
-
-        } catch (IOException e) {
+            boolean incremental = isIncremental();
+            configureChangeLog(incremental);
+            if (incremental && lastFullBackupAt != null
+                    && Instant.now().isBefore(lastFullBackupAt.plus(Duration.ofHours(fullIntervalHours)))) {
+                sendDelta();
+            } else {
+                sendFullBackup(incremental);
+            }
+        } catch (Exception e) {
             System.err.println("Ошибка создания бэкапа: " + e.getMessage());
         }
     }
 
     /**
-     * Отправляет созданный бэкап базы данных в Telegram-чат администратора.
-     * Если файл бэкапа отсутствует — операция пропускается.
-     * При ошибке отправки записывает сообщение в системный err.
+     * Отправляет полный снимок, если его содержимое отличается от последнего отправленного.
+     * В режиме incremental после отправки из журнала убираются изменения, вошедшие в снимок.
      */
-    private void sendBackupToTelegram() {
+    private void sendFullBackup(boolean incremental) throws IOException, SQLException {
         File backupFile = new File(BACKUP_FILE);
-        if (!backupFile.exists()) return;
+        Files.deleteIfExists(backupFile.toPath());
+        backup(backupFile);
+        long checkpoint = incremental ? readCheckpoint(backupFile) : 0;
+
+        byte[] hash = hash(backupFile);
+        if (Arrays.equals(hash, lastSentHash)) {
+            System.out.println("💾 Бэкап не отправлен: данные не менялись");
+        } else if (uploader.upload("snapshot", "finance_bot_backup.db.gz",
+                "🤖 Автобэкап базы данных\nSHA-256: " + HexFormat.of().formatHex(hash),
+                out -> Files.copy(backupFile.toPath(), out))) {
+            lastSentHash = hash;
+        } else {
+            return;
+        }
+        lastFullBackupAt = Instant.now();
+        if (incremental) {
+            changeLog.trim(checkpoint);
+        }
+    }
 
-        SendDocument document = new SendDocument();
-        document.setChatId(adminChatId);
-        document.setDocument(new InputFile(backupFile, "finance_bot_backup.db"));
-        document.setCaption("🤖 Автобэкап базы данных");
+    /**
+     * Отправляет изменения из журнала с момента прошлой отправки и убирает их из журнала
+     */
+    private void sendDelta() {
+        List<BackupChangeLog.Change> changes = changeLog.readAll();
+        if (changes.isEmpty()) {
+            System.out.println("💾 Дельта не отправлена: изменений нет");
+            return;
+        }
+        long firstSeq = changes.get(0).seq();
+        long lastSeq = changes.get(changes.size() - 1).seq();
+
+        String name = "finance_bot_delta_" + firstSeq + "-" + lastSeq + ".jsonl.gz";
+        boolean sent = uploader.upload("delta", name, "🤖 Изменения БД: " + changes.size(), out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (BackupChangeLog.Change change : changes) {
+                ObjectNode line = objectMapper.createObjectNode()
+                        .put("seq", change.seq())
+                        .put("table", change.table())
+                        .put("op", change.op())
+                        .put("id", change.rowId());
+                if (change.row() != null) {
+                    line.set("row", objectMapper.readTree(change.row()));
+                }
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+            }
+            writer.flush();
+        });
+        if (sent) {
+            changeLog.trim(lastSeq);
+        }
+    }
 
+    private boolean isIncremental() {
+        return "incremental".equalsIgnoreCase(mode);
+    }
+
+    // Включает журнал до первого снимка (иначе изменения между снимком и журналом потеряются)
+    // или убирает его, если режим выключен
+    private void configureChangeLog(boolean incremental) {
+        if (changeLogConfigured) {
+            return;
+        }
+        if (incremental) {
+            changeLog.install();
+        } else {
+            changeLog.uninstall();
+        }
+        changeLogConfigured = true;
+    }
+
+    private long readCheckpoint(File backupFile) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + backupFile.getPath())) {
+            return BackupChangeLog.readCheckpoint(connection);
+        }
+    }
+
+    /**
+     * Копирует БД через online backup API: читатели и писатели работают во время копирования
+     */
+    private void backup(File backupFile) throws SQLException {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        try (SQLiteConnection connection = config.createConnection(databaseUrl)) {
+            int result = connection.getDatabase().backup("main", backupFile.getPath(), null,
+                    stepPauseMs, BUSY_RETRIES, pagesPerStep);
+            if (result != Codes.SQLITE_OK && result != Codes.SQLITE_DONE) {
+                throw new SQLException("backup завершился с кодом " + result);
+            }
+        }
+    }
+
+    // SHA-256 содержимого копии: одинаковые данные дают одинаковые страницы
+    private static byte[] hash(File file) throws IOException {
+        MessageDigest digest;
         try {
-            bot.execute(document);
-        } catch (TelegramApiException e) {
-            System.err.println("Ошибка отправки бэкапа: " + e.getMessage());
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
         }
+        return digest.digest();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backupExecutor.shutdownNow();
     }
 }
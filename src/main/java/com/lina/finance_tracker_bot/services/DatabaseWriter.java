@@ -0,0 +1,199 @@
+package com.lina.finance_tracker_bot.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Единственный поток записи в SQLite.
+ * SQLite допускает одного писателя, поэтому записи сервисов выполняются
+ * по очереди в отдельном потоке, каждая в своей транзакции, а вызывающий поток ждёт результат.
+ * Так писатели не соревнуются за блокировку БД и не получают SQLITE_BUSY.
+ * В режиме группового коммита (bot.storage.group-commit.enabled) записи, пришедшие
+ * в течение нескольких миллисекунд, фиксируются одной транзакцией.
+ */
+@Service
+public class DatabaseWriter {
+
+    private static final String THREAD_NAME = "db-writer";
+
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, THREAD_NAME));
+    private volatile Thread writerThread;
+
+    // Групповой коммит: ожидающие записи и признак запланированного сброса
+    private final boolean groupCommitEnabled;
+    private final long groupWindowMicros;
+    private final int maxGroupSize;
+    private final ConcurrentLinkedQueue<GroupedWrite<?>> pendingGroup = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final DistributionSummary groupSize;
+    private final Timer groupCommit;
+
+    public DatabaseWriter(TransactionTemplate transactionTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${bot.storage.group-commit.enabled:false}") boolean groupCommitEnabled,
+                          @Value("${bot.storage.group-commit.window-ms:5}") long groupWindowMs,
+                          @Value("${bot.storage.group-commit.max-size:100}") int maxGroupSize) {
+        this.transactionTemplate = transactionTemplate;
+        this.groupCommitEnabled = groupCommitEnabled;
+        this.groupWindowMicros = TimeUnit.MILLISECONDS.toMicros(groupWindowMs);
+        this.maxGroupSize = maxGroupSize;
+        this.groupSize = DistributionSummary.builder("bot.db.group.commit.size")
+                .description("Записи, зафиксированные одним коммитом")
+                .register(meterRegistry);
+        this.groupCommit = Timer.builder("bot.db.group.commit")
+                .description("Выполнение и фиксация группы записей")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет запись в потоке записи и возвращает её результат
+     * @param work операции с репозиториями, выполняемые в одной транзакции
+     * @return результат work
+     */
+    public <T> T write(Supplier<T> work) {
+        // вложенная запись из потока записи выполняется сразу, иначе поток ждал бы сам себя
+        if (Thread.currentThread() == writerThread) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        return await(writer.submit(() -> {
+            writerThread = Thread.currentThread();
+            return transactionTemplate.execute(status -> work.get());
+        }));
+    }
+
+    /**
+     * Выполняет запись без результата в потоке записи
+     * @param work операции с репозиториями, выполняемые в одной транзакции
+     */
+    public void write(Runnable work) {
+        write(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Выполняет запись, которую можно зафиксировать вместе с соседними.
+     * Возвращает результат только после коммита транзакции, в которую попала запись.
+     * Если группа откатилась из-за ошибки одной записи, каждая запись повторяется
+     * в отдельной транзакции, поэтому work должна сама создавать сохраняемые сущности.
+     * Без группового коммита работает как {@link #write(Supplier)}.
+     *
+     * @param work операции с репозиториями
+     * @return результат work
+     */
+    public <T> T writeGrouped(Supplier<T> work) {
+        if (!groupCommitEnabled || Thread.currentThread() == writerThread) {
+            return write(work);
+        }
+        GroupedWrite<T> grouped = new GroupedWrite<>(work, new CompletableFuture<>());
+        pendingGroup.add(grouped);
+        if (flushScheduled.compareAndSet(false, true)) {
+            writer.schedule(this::flushGroup, groupWindowMicros, TimeUnit.MICROSECONDS);
+        }
+        return await(grouped.result());
+    }
+
+    // Фиксирует накопленные записи одной транзакцией
+    private void flushGroup() {
+        writerThread = Thread.currentThread();
+        flushScheduled.set(false);
+
+        List<GroupedWrite<?>> group = new ArrayList<>();
+        GroupedWrite<?> next;
+        while (group.size() < maxGroupSize && (next = pendingGroup.poll()) != null) {
+            group.add(next);
+        }
+        // остаток не поместился в группу — сбрасываем его следующим, без ожидания
+        if (!pendingGroup.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            writer.execute(this::flushGroup);
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Object> results;
+        try {
+            results = transactionTemplate.execute(status -> {
+                List<Object> values = new ArrayList<>(group.size());
+                for (GroupedWrite<?> write : group) {
+                    values.add(write.work().get());
+                }
+                return values;
+            });
+        } catch (RuntimeException | Error e) {
+            // одна запись откатила всю группу — повторяем каждую отдельно
+            for (GroupedWrite<?> write : group) {
+                write.runAlone(transactionTemplate);
+            }
+            return;
+        }
+        groupCommit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        groupSize.record(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).complete(results.get(i));
+        }
+    }
+
+    private static <T> T await(Future<T> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Запись в БД прервана", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    /**
+     * Запись, ожидающая группового коммита
+     */
+    private record GroupedWrite<T>(Supplier<T> work, CompletableFuture<T> result) {
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            result.complete((T) value);
+        }
+
+        void runAlone(TransactionTemplate transactionTemplate) {
+            try {
+                result.complete(transactionTemplate.execute(status -> work.get()));
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.Money;
+import com.lina.finance_tracker_bot.repository.TransactionExportRow;
+import com.lina.finance_tracker_bot.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка всей истории пользователя в CSV.
+ * Транзакции читаются курсором вперёд (поток запроса без сущностей) и строка за строкой
+ * пишутся в сжимающий поток {@link BackupUploader}, который сразу отправляет файл в чат:
+ * память не зависит от длины истории.
+ * Метрики: bot.export (время выгрузки), bot.export.rows (выгруженные строки —
+ * растут по ходу выгрузки, по ним видна скорость) и bot.export.active.
+ */
+@Service
+public class ExportService {
+
+    // Как часто добавлять выгруженные строки в счётчик во время выгрузки
+    private static final int PROGRESS_STEP = 1000;
+
+    private final TransactionRepository transactionRepository;
+    private final BackupUploader uploader;
+    private final TransactionTemplate readTransaction;
+    private final Counter rowsCounter;
+    private final Timer exportTimer;
+    private final AtomicInteger activeExports = new AtomicInteger();
+
+    public ExportService(TransactionRepository transactionRepository,
+                         BackupUploader uploader,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.uploader = uploader;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.rowsCounter = Counter.builder("bot.export.rows").register(meterRegistry);
+        this.exportTimer = Timer.builder("bot.export").register(meterRegistry);
+    }
+
+    /**
+     * Отправляет пользователю его историю операций файлом CSV (gzip)
+     * @param chatId ID чата пользователя
+     * @return сообщение о результате выгрузки
+     */
+    public String exportCommand(Long chatId) {
+        if (transactionRepository.findFirstDateByUserChatId(chatId).isEmpty()) {
+            return "📭 У вас пока нет операций для выгрузки";
+        }
+
+        AtomicLong rows = new AtomicLong();
+        activeExports.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            boolean sent = uploader.upload(chatId.toString(), "export",
+                    "finance_history_" + LocalDate.now() + ".csv.gz",
+                    "📤 История операций (CSV)",
+                    out -> {
+                        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                        writeCsv(chatId, writer, rows);
+                        writer.flush();
+                    });
+            if (!sent) {
+                return "❌ Не удалось отправить выгрузку, попробуйте позже";
+            }
+            exportTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return "✅ Выгружено операций: " + rows.get();
+        } finally {
+            activeExports.decrementAndGet();
+        }
+    }
+
+    /**
+     * Пишет историю в CSV внутри транзакции только для чтения (поток запроса живёт, пока она открыта)
+     */
+    private void writeCsv(Long chatId, Writer writer, AtomicLong rows) throws IOException {
+        writer.write("date,type,category,amount\n");
+        try {
+            readTransaction.executeWithoutResult(status -> {
+                try (Stream<TransactionExportRow> stream = transactionRepository.streamForExport(chatId)) {
+                    StringBuilder line = new StringBuilder(96);
+                    long pending = 0;
+                    Iterator<TransactionExportRow> iterator = stream.iterator();
+                    while (iterator.hasNext()) {
+                        line.setLength(0);
+                        writer.append(appendRow(line, iterator.next()));
+
+                        rows.incrementAndGet();
+                        if (++pending == PROGRESS_STEP) {
+                            rowsCounter.increment(pending);
+                            pending = 0;
+                        }
+                    }
+                    rowsCounter.increment(pending);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Дописывает строку CSV в формате date,type,category,amount с переводом строки в конце
+     * @return тот же StringBuilder
+     */
+    static StringBuilder appendRow(StringBuilder line, TransactionExportRow row) {
+        line.append(row.date()).append(',').append(row.type()).append(',');
+        appendQuoted(line, row.category());
+        return Money.append(line.append(','), row.amountMinor(), '.').append('\n');
+    }
+
+    // Поле CSV в кавычках, если в нём есть запятая, кавычка или перенос строки
+    static void appendQuoted(StringBuilder line, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * @return количество выгрузок, идущих сейчас
+     */
+    public int getActiveExports() {
+        return activeExports.get();
+    }
+}
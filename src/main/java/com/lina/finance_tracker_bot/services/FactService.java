@@ -2,23 +2,43 @@ package com.lina.finance_tracker_bot.services;
 
 import com.lina.finance_tracker_bot.bot.MessageSender;
 import com.lina.finance_tracker_bot.exeptions.FinanceTrackerException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Сервис для получения и обработки случайных фактов.
  * Получает факты с внешнего ресурса, парсит их из HTML и форматирует для отправки пользователю.
+ * Факт дня загружается заранее (при старте и вскоре после полуночи) вместе с небольшим
+ * запасом фактов, поэтому ответ пользователю не ждёт внешний сайт.
  * При ошибках использует заранее заготовленные запасные факты.
  */
 @Service
 public class FactService {
 
+    // Сколько загруженных фактов держать про запас на случай сбоя сайта
+    private static final int FALLBACK_POOL_SIZE = 10;
+
     private final FactClient factClient; // Клиент для получения HTML-страницы с фактом
     private final MessageSender messageSender; // Сервис для отправки сообщений пользователям
 
+    private final AtomicReference<DailyFact> dailyFact = new AtomicReference<>();
+    private final ConcurrentLinkedDeque<String> fallbackPool = new ConcurrentLinkedDeque<>();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
     /**
      * Конструктор сервиса.
      *
@@ -31,18 +51,102 @@ public class FactService {
     }
 
     /**
-     * Получает случайный факт с внешнего сайта.
-     * При ошибке возвращает запасной факт.
+     * Возвращает факт дня из памяти, не обращаясь к внешнему сайту.
+     * Если факт на сегодня ещё не загружен, им становится факт из запаса,
+     * а загрузка запускается в фоне. Когда запаса нет — возвращает запасной факт.
      *
      * @return отформатированный текст факта для отправки пользователю
      */
     public String getRandomFact() {
+        LocalDate today = LocalDate.now();
+        DailyFact cached = dailyFact.get();
+        if (cached != null && cached.day().equals(today)) {
+            return cached.text();
+        }
+
+        prefetchAsync();
+        String pooled = fallbackPool.pollFirst();
+        if (pooled != null) {
+            DailyFact promoted = new DailyFact(today, pooled);
+            // если параллельно уже выбран факт на сегодня — отдаём его, а свой возвращаем в запас
+            if (dailyFact.compareAndSet(cached, promoted)) {
+                return pooled;
+            }
+            fallbackPool.offerFirst(pooled);
+            return getRandomFact();
+        }
+        return getBackupFact();
+    }
+
+    /**
+     * Загружает факт на новый день вскоре после полуночи
+     */
+    @Scheduled(cron = "0 5 0 * * *")
+    public void prefetchDailyFact() {
+        prefetchAsync();
+    }
+
+    /**
+     * Загружает факт дня и запас фактов при старте приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prefetchOnStartup() {
+        prefetchAsync();
+    }
+
+    // Запускает загрузку в фоне, если она ещё не идёт
+    private void prefetchAsync() {
+        if (prefetching.compareAndSet(false, true)) {
+            try {
+                prefetchExecutor.execute(this::prefetch);
+            } catch (Exception e) {
+                prefetching.set(false);
+            }
+        }
+    }
+
+    /**
+     * Загружает факт на сегодня и пополняет запас до FALLBACK_POOL_SIZE
+     */
+    private void prefetch() {
+        try {
+            LocalDate today = LocalDate.now();
+            DailyFact cached = dailyFact.get();
+            if (cached == null || !cached.day().equals(today)) {
+                String fact = fetchFact();
+                if (fact == null) {
+                    return;
+                }
+                dailyFact.set(new DailyFact(today, fact));
+            }
+
+            int attempts = FALLBACK_POOL_SIZE * 2; // сайт может повторять факты
+            while (fallbackPool.size() < FALLBACK_POOL_SIZE && attempts-- > 0) {
+                String fact = fetchFact();
+                if (fact == null) {
+                    return;
+                }
+                if (!fallbackPool.contains(fact) && !fact.equals(dailyFact.get().text())) {
+                    fallbackPool.offerLast(fact);
+                }
+            }
+        } finally {
+            prefetching.set(false);
+        }
+    }
+
+    /**
+     * Получает случайный факт с внешнего сайта.
+     *
+     * @return отформатированный текст факта или null при ошибке
+     */
+    private String fetchFact() {
         try {
             String html = factClient.getFactHtml();
             return parseFactFromHtmlManual(html);
         } catch (FinanceTrackerException e) {
             System.err.println("Ошибка получения факта: " + e.getMessage());
-            return getBackupFact();
+            return null;
         }
     }
 
@@ -51,7 +155,7 @@ public class FactService {
      * Ищет содержимое таблицы с классом "text".
      *
      * @param html HTML-код страницы с фактом
-     * @return извлечённый и отформатированный факт или запасной факт при ошибке
+     * @return извлечённый и отформатированный факт или null при ошибке
      */
     private String parseFactFromHtmlManual(String html) {
         try {
@@ -73,7 +177,7 @@ public class FactService {
 
         } catch (Exception e) {
             System.err.println("Ошибка парсинга факта: " + e.getMessage());
-            return getBackupFact();
+            return null;
         }
     }
 
@@ -82,7 +186,7 @@ public class FactService {
      * Пытается найти факт по ключевым словам или любому достаточно длинному тексту в теге <td>.
      *
      * @param html HTML-код страницы
-     * @return найденный факт или запасной факт при неудаче
+     * @return найденный факт или null при неудаче
      */
     private String findFactAlternative(String html) {
         try {
@@ -114,7 +218,7 @@ public class FactService {
             System.err.println("Альтернативный парсинг не сработал: " + e.getMessage());
         }
 
-        return getBackupFact();
+        return null;
     }
 
     /**
@@ -148,4 +252,15 @@ public class FactService {
         int randomIndex = (int) (Math.random() * backupFacts.size());
         return formatFact(backupFacts.get(randomIndex));
     }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Факт и день, для которого он выбран
+     */
+    private record DailyFact(LocalDate day, String text) {
+    }
 }
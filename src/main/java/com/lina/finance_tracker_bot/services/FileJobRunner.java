@@ -0,0 +1,114 @@
+package com.lina.finance_tracker_bot.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Фоновые задачи с файлами: импорт и выгрузка CSV.
+ * Они долго скачивают, разбирают и отправляют файлы, поэтому выполняются не в полосе
+ * UpdateDispatcher (она обслуживает и другие чаты), а в отдельном ограниченном пуле.
+ * У чата одновременно идёт не больше одной такой задачи; если пул и его очередь заняты,
+ * новая задача не принимается.
+ */
+@Service
+public class FileJobRunner {
+
+    /**
+     * Итог постановки задачи
+     */
+    public enum Submission {
+        STARTED,    // задача принята, результат придёт в onResult
+        CHAT_BUSY,  // у чата уже идёт импорт или выгрузка
+        OVERLOADED  // пул и очередь заняты
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> activeChats = ConcurrentHashMap.newKeySet();
+
+    public FileJobRunner(@Value("${bot.file-jobs.threads:2}") int threads,
+                         @Value("${bot.file-jobs.queue-capacity:20}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "file-job-" + threadNumber.incrementAndGet()));
+    }
+
+    /**
+     * Ставит задачу чата в пул
+     * @param chatId ID чата пользователя
+     * @param job задача, возвращающая текст результата для пользователя
+     * @param onResult получает текст результата (или ошибки) по завершении задачи
+     * @return принята ли задача
+     */
+    public Submission submit(Long chatId, Supplier<String> job, Consumer<String> onResult) {
+        if (!activeChats.add(chatId)) {
+            return Submission.CHAT_BUSY;
+        }
+        try {
+            executor.execute(() -> run(chatId, job, onResult));
+            return Submission.STARTED;
+        } catch (RejectedExecutionException e) {
+            activeChats.remove(chatId);
+            return Submission.OVERLOADED;
+        }
+    }
+
+    private void run(Long chatId, Supplier<String> job, Consumer<String> onResult) {
+        String result;
+        try {
+            result = job.get();
+        } catch (Exception e) {
+            System.err.println("Ошибка фоновой задачи с файлом: " + e.getMessage());
+            result = "❌ Не удалось выполнить операцию с файлом, попробуйте позже";
+        } finally {
+            // до отправки результата, чтобы пользователь сразу мог запустить следующую задачу
+            activeChats.remove(chatId);
+        }
+        try {
+            onResult.accept(result);
+        } catch (Exception e) {
+            System.err.println("Ошибка отправки результата задачи с файлом: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return количество выполняющихся задач
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return количество задач, ожидающих свободного потока
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Останавливает пул, давая идущим задачам немного времени на завершение
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
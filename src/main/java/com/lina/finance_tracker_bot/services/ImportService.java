@@ -0,0 +1,280 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.Money;
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.TransactionExportRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Импорт истории операций из CSV-файла, присланного в чат.
+ * Формат тот же, что у выгрузки: date,type,category,amount (заголовок необязателен);
+ * поле в кавычках может занимать несколько строк.
+ * Файл читается построчно прямо из загрузки Telegram, строки проверяются и копятся
+ * частями по bot.import.chunk-size: каждая часть вставляется одним пакетом JDBC
+ * в своей транзакции через поток записи, вместе с обновлением дневных агрегатов.
+ * Метрики: bot.import (время импорта) и bot.import.rows (строки, result=imported|rejected).
+ */
+@Service
+public class ImportService {
+
+    // Сколько номеров неверных строк показать пользователю
+    private static final int MAX_REPORTED_ERRORS = 5;
+    // Предел длины записи из нескольких строк: незакрытая кавычка не должна склеить весь файл
+    private static final int MAX_RECORD_LENGTH = 4096;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private final ObjectProvider<TelegramLongPollingBot> bot; // Бот для скачивания файла
+    private final UserInfoService userInfoService;
+    private final TransactionRollupService rollupService;
+    private final DatabaseWriter databaseWriter;
+    private final ReportCache reportCache;
+    private final DailyBucketIndex bucketIndex;
+    private final int chunkSize;
+    private final long maxRows;
+    private final Counter importedRows;
+    private final Counter rejectedRows;
+    private final Timer importTimer;
+
+    public ImportService(ObjectProvider<TelegramLongPollingBot> bot,
+                         UserInfoService userInfoService,
+                         TransactionRollupService rollupService,
+                         DatabaseWriter databaseWriter,
+                         ReportCache reportCache,
+                         DailyBucketIndex bucketIndex,
+                         MeterRegistry meterRegistry,
+                         @Value("${bot.import.chunk-size:1000}") int chunkSize,
+                         @Value("${bot.import.max-rows:200000}") long maxRows) {
+        this.bot = bot;
+        this.userInfoService = userInfoService;
+        this.rollupService = rollupService;
+        this.databaseWriter = databaseWriter;
+        this.reportCache = reportCache;
+        this.bucketIndex = bucketIndex;
+        this.chunkSize = chunkSize;
+        this.maxRows = maxRows;
+        this.importedRows = Counter.builder("bot.import.rows").tag("result", "imported").register(meterRegistry);
+        this.rejectedRows = Counter.builder("bot.import.rows").tag("result", "rejected").register(meterRegistry);
+        this.importTimer = Timer.builder("bot.import").register(meterRegistry);
+    }
+
+    /**
+     * Скачивает присланный файл и импортирует операции из него
+     * @param chatId ID чата пользователя
+     * @param fileId ID файла в Telegram
+     * @param fileName имя файла (.csv или .csv.gz)
+     * @param username имя пользователя
+     * @return сообщение о результате импорта
+     */
+    public String importCsv(Long chatId, String fileId, String fileName, String username) {
+        long start = System.nanoTime();
+        try {
+            Long userId = userInfoService.getOrCreateUser(chatId, username).getId();
+            TelegramLongPollingBot telegramBot = bot.getObject();
+            File file = telegramBot.execute(new GetFile(fileId));
+
+            ImportResult result;
+            try (InputStream download = telegramBot.downloadFileAsStream(file);
+                 InputStream in = fileName != null && fileName.endsWith(".gz") ? new GZIPInputStream(download) : download) {
+                result = importRows(chatId, userId, in);
+            } finally {
+                // часть строк могла записаться до ошибки
+                reportCache.invalidate(chatId);
+                bucketIndex.invalidate(chatId);
+            }
+            importTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result.message();
+        } catch (TelegramApiException | IOException e) {
+            return "❌ Не удалось прочитать файл: " + e.getMessage();
+        } catch (Exception e) {
+            return "❌ Ошибка импорта: " + e.getMessage();
+        }
+    }
+
+    // Разбирает файл и пишет его частями; ошибки отдельных строк попадают в результат
+    ImportResult importRows(Long chatId, Long userId, InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<TransactionExportRow> chunk = new ArrayList<>(chunkSize);
+        List<String> fields = new ArrayList<>(4);
+        List<Long> errorLines = new ArrayList<>();
+        long imported = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+        boolean truncated = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            long recordLine = lineNumber;
+            if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1); // BOM из Excel
+            }
+            // поле в кавычках может содержать перенос строки (так его пишет выгрузка): запись продолжается
+            String next;
+            while (hasOpenQuote(line) && line.length() < MAX_RECORD_LENGTH && (next = reader.readLine()) != null) {
+                lineNumber++;
+                line = line + "\n" + next;
+            }
+            if (line.isBlank() || (recordLine == 1 && line.toLowerCase().startsWith("date,"))) {
+                continue;
+            }
+            if (imported + chunk.size() >= maxRows) {
+                truncated = true;
+                break;
+            }
+
+            TransactionExportRow row = parseRow(line, fields);
+            if (row == null) {
+                rejected++;
+                if (errorLines.size() < MAX_REPORTED_ERRORS) {
+                    errorLines.add(recordLine);
+                }
+                continue;
+            }
+            chunk.add(row);
+            if (chunk.size() == chunkSize) {
+                imported += flush(chatId, userId, chunk);
+            }
+        }
+        imported += flush(chatId, userId, chunk);
+        rejectedRows.increment(rejected);
+        return new ImportResult(imported, rejected, errorLines, truncated);
+    }
+
+    private long flush(Long chatId, Long userId, List<TransactionExportRow> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<TransactionExportRow> rows = List.copyOf(chunk);
+        databaseWriter.write(() -> rollupService.importChunk(userId, chatId, rows));
+        chunk.clear();
+        importedRows.increment(rows.size());
+        return rows.size();
+    }
+
+    /**
+     * @return true, если в записи осталась незакрытая кавычка ("" внутри поля — две кавычки, чётность не меняют)
+     */
+    static boolean hasOpenQuote(String record) {
+        int quotes = 0;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 != 0;
+    }
+
+    /**
+     * Разбирает строку CSV; поля в кавычках могут содержать запятые и "" вместо кавычки
+     * @return строка или null, если она неверная
+     */
+    static TransactionExportRow parseRow(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        if (fields.size() != 4) {
+            return null;
+        }
+
+        LocalDateTime date = parseDate(fields.get(0));
+        TransactionType type = parseType(fields.get(1));
+        String category = fields.get(2).toLowerCase();
+        if (date == null || type == null || category.isEmpty()) {
+            return null;
+        }
+        try {
+            double amount = Double.parseDouble(fields.get(3).replace(',', '.'));
+            if (!(amount > 0) || Double.isInfinite(amount)) {
+                return null;
+            }
+            return new TransactionExportRow(date, type, category, Money.toMinor(amount));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    // Дата как в выгрузке (2024-01-31T12:00) или дд.мм.гггг
+    private static LocalDateTime parseDate(String value) {
+        try {
+            if (value.indexOf('T') > 0) {
+                return LocalDateTime.parse(value);
+            }
+            if (value.indexOf('-') > 0) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return LocalDate.parse(value, DATE_FORMATTER).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static TransactionType parseType(String value) {
+        return switch (value.toLowerCase()) {
+            case "income", "доход" -> TransactionType.INCOME;
+            case "expense", "расход" -> TransactionType.EXPENSE;
+            default -> null;
+        };
+    }
+
+    record ImportResult(long imported, long rejected, List<Long> errorLines, boolean truncated) {
+        String message() {
+            StringBuilder sb = new StringBuilder("📥 Импортировано операций: ").append(imported);
+            if (rejected > 0) {
+                sb.append("\n⚠️ Пропущено неверных строк: ").append(rejected)
+                        .append(" (например, строки ");
+                for (int i = 0; i < errorLines.size(); i++) {
+                    sb.append(i == 0 ? "" : ", ").append(errorLines.get(i));
+                }
+                sb.append(")\n💡 Формат: date,type,category,amount — например: 31.01.2024,expense,Еда,500");
+            }
+            if (truncated) {
+                sb.append("\n⚠️ Файл слишком большой, импорт остановлен на лимите строк");
+            }
+            return sb.toString();
+        }
+    }
+}
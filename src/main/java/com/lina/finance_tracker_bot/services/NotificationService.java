@@ -4,16 +4,31 @@ import com.lina.finance_tracker_bot.bot.MessageSender;
 import com.lina.finance_tracker_bot.modelSqlLite.Notification;
 import com.lina.finance_tracker_bot.modelSqlLite.User;
 import com.lina.finance_tracker_bot.repository.NotificationRepository;
-import jakarta.transaction.Transactional;
-import org.springframework.scheduling.annotation.Scheduled;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Сервис для управления уведомлениями пользователей
+ * Сервис для управления уведомлениями пользователей.
+ * Расписание напоминаний хранится в памяти, упорядоченным по времени срабатывания:
+ * поток просыпается ровно к ближайшему напоминанию и отправляет все, чей срок наступил.
+ * При старте расписание строится по БД, пропущенные напоминания отправляются сразу.
  */
 @Service
 public class NotificationService {
@@ -21,15 +36,25 @@ public class NotificationService {
     private final UserInfoService userInfoService;
     private final MessageSender messageSender;
     private final UserStateService userStateService;
+    private final DatabaseWriter databaseWriter;
+
+    // Расписание напоминаний: по времени срабатывания и по id уведомления
+    private final ConcurrentSkipListSet<ScheduledReminder> reminders = new ConcurrentSkipListSet<>(
+            Comparator.comparing(ScheduledReminder::due).thenComparing(ScheduledReminder::id));
+    private final ConcurrentMap<Long, ScheduledReminder> remindersById = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reminderScheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> nextWakeUp;
 
     public NotificationService(NotificationRepository notificationRepository,
                                UserInfoService userInfoService,
                                MessageSender messageSender,
-                               UserStateService userStateService) {
+                               UserStateService userStateService,
+                               DatabaseWriter databaseWriter) {
         this.notificationRepository = notificationRepository;
         this.userInfoService = userInfoService;
         this.messageSender = messageSender;
         this.userStateService = userStateService;
+        this.databaseWriter = databaseWriter;
     }
 
     /**
@@ -92,7 +117,8 @@ public class NotificationService {
 
             String notificationMessage = parts[2];
             Notification notification = new Notification(time, notificationMessage, user);
-            notificationRepository.save(notification);
+            databaseWriter.write(() -> notificationRepository.save(notification));
+            addReminder(notification, chatId);
 
             return "✅ Уведомление создано!\n" +
                     "⏰ Время: " + time.format(UserStateService.TIME_FORMATTER) + "\n" +
@@ -165,7 +191,8 @@ public class NotificationService {
             }
 
             Notification selectedNotification = notifications.get(notificationNumber - 1);
-            notificationRepository.delete(selectedNotification);
+            databaseWriter.write(() -> notificationRepository.delete(selectedNotification));
+            removeReminder(selectedNotification.getId());
 
             String result = "✅ Уведомление удалено!\n" +
                     "⏰ Было: " + selectedNotification.getNotificationTime().format(UserStateService.TIME_FORMATTER) +
@@ -189,31 +216,106 @@ public class NotificationService {
     }
 
     /**
-     * Проверяет и отправляет уведомления, время которых наступило
-     * Вызывается автоматически каждую минуту
+     * Строит расписание напоминаний по БД при старте приложения
      */
-    @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void checkAndSendNotifications() {
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadReminders() {
         try {
-            LocalTime currentTime = LocalTime.now().withSecond(0).withNano(0);
-            List<Notification> notificationsToSend = notificationRepository.findNotificationsByTime(currentTime);
-
-            for (Notification notification : notificationsToSend) {
-                String message = "🔔 Напоминание (" + notification.getNotificationTime().format(UserStateService.TIME_FORMATTER) + "):\n" +
-                        notification.getMessage();
-
-                messageSender.sendTextWithTtl(
-                        notification.getUser().getChatId(),
-                        message,
-                        MessageSender.REMINDER_TTL
-                );
+            for (Notification notification : notificationRepository.findAllWithUser()) {
+                ScheduledReminder reminder = toReminder(notification, notification.getUser().getChatId());
+                reminders.add(reminder);
+                remindersById.put(reminder.id(), reminder);
+            }
+            System.out.println("🔔 Загружено напоминаний: " + remindersById.size());
+            rescheduleWakeUp();
+        } catch (Exception e) {
+            System.err.println("Ошибка загрузки напоминаний: " + e.getMessage());
+        }
+    }
 
-                notificationRepository.delete(notification);
+    /**
+     * Отправляет все напоминания, срок которых наступил, удаляет их из БД
+     * и планирует следующее пробуждение
+     */
+    private void dispatchDueReminders() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> sentIds = new ArrayList<>();
+
+            ScheduledReminder reminder;
+            while ((reminder = pollDue(now)) != null) {
+                remindersById.remove(reminder.id());
+                String message = "🔔 Напоминание (" + reminder.time().format(UserStateService.TIME_FORMATTER) + "):\n" +
+                        reminder.message();
+                messageSender.sendTextWithTtl(reminder.chatId(), message, MessageSender.REMINDER_TTL);
+                sentIds.add(reminder.id());
             }
 
+            if (!sentIds.isEmpty()) {
+                databaseWriter.write(() -> notificationRepository.deleteAllByIdInBatch(sentIds));
+            }
         } catch (Exception e) {
             System.err.println("Ошибка проверки или отправки уведомлений: " + e.getMessage());
+        } finally {
+            rescheduleWakeUp();
+        }
+    }
+
+    private ScheduledReminder pollDue(LocalDateTime now) {
+        ScheduledReminder first = reminders.isEmpty() ? null : reminders.first();
+        if (first == null || first.due().isAfter(now)) {
+            return null;
+        }
+        return reminders.remove(first) ? first : pollDue(now);
+    }
+
+    private void addReminder(Notification notification, Long chatId) {
+        ScheduledReminder reminder = toReminder(notification, chatId);
+        reminders.add(reminder);
+        remindersById.put(reminder.id(), reminder);
+        rescheduleWakeUp();
+    }
+
+    private void removeReminder(Long notificationId) {
+        ScheduledReminder reminder = remindersById.remove(notificationId);
+        if (reminder != null) {
+            reminders.remove(reminder);
+            rescheduleWakeUp();
+        }
+    }
+
+    // Планирует пробуждение к ближайшему напоминанию
+    private synchronized void rescheduleWakeUp() {
+        if (nextWakeUp != null) {
+            nextWakeUp.cancel(false);
+            nextWakeUp = null;
+        }
+        if (reminders.isEmpty() || reminderScheduler.isShutdown()) {
+            return;
+        }
+        long delayMs = Math.max(0, Duration.between(LocalDateTime.now(), reminders.first().due()).toMillis());
+        nextWakeUp = reminderScheduler.schedule(this::dispatchDueReminders, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Напоминание срабатывает в день создания в указанное время
+    private static ScheduledReminder toReminder(Notification notification, Long chatId) {
+        LocalDateTime createdAt = notification.getCreatedAt() != null ? notification.getCreatedAt() : LocalDateTime.now();
+        LocalDateTime due = createdAt.toLocalDate().atTime(notification.getNotificationTime());
+        if (due.isBefore(createdAt.withSecond(0).withNano(0))) {
+            due = due.plusDays(1);
         }
+        return new ScheduledReminder(notification.getId(), due, chatId,
+                notification.getNotificationTime(), notification.getMessage());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reminderScheduler.shutdownNow();
+    }
+
+    /**
+     * Запись расписания: всё, что нужно для отправки, без обращения к БД
+     */
+    private record ScheduledReminder(Long id, LocalDateTime due, Long chatId, LocalTime time, String message) {
     }
-}
\ No newline at end of file
+}
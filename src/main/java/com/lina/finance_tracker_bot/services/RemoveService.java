@@ -18,6 +18,10 @@ public class RemoveService {
     private final TransactionRepository transactionRepository; // Репозиторий для работы с транзакциями
     private final UserInfoService userInfoService; // Сервис для работы с информацией о пользователях
     private final UserStateService userStateService; // Сервис для управления состояниями пользователей
+    private final TransactionRollupService rollupService; // Сервис транзакций с дневными агрегатами
+    private final DatabaseWriter databaseWriter; // Поток записи в БД
+    private final ReportCache reportCache; // Кэш отчётов, устаревающий после удаления
+    private final DailyBucketIndex bucketIndex; // Накопленные суммы для отчётов за период
 
     /**
      * Конструктор сервиса.
@@ -25,13 +29,25 @@ public class RemoveService {
      * @param transactionRepository репозиторий транзакций
      * @param userInfoService сервис получения/создания пользователей
      * @param userStateService сервис управления состояниями пользователей
+     * @param rollupService сервис транзакций с дневными агрегатами
+     * @param databaseWriter поток записи в БД
+     * @param reportCache кэш отчётов
+     * @param bucketIndex накопленные суммы для отчётов за период
      */
     public RemoveService(TransactionRepository transactionRepository,
                          UserInfoService userInfoService,
-                         UserStateService userStateService) {
+                         UserStateService userStateService,
+                         TransactionRollupService rollupService,
+                         DatabaseWriter databaseWriter,
+                         ReportCache reportCache,
+                         DailyBucketIndex bucketIndex) {
         this.transactionRepository = transactionRepository;
         this.userInfoService = userInfoService;
         this.userStateService = userStateService;
+        this.rollupService = rollupService;
+        this.databaseWriter = databaseWriter;
+        this.reportCache = reportCache;
+        this.bucketIndex = bucketIndex;
     }
 
     /**
@@ -50,7 +66,9 @@ public class RemoveService {
                 return "📭 История уже пуста";
             }
 
-            transactionRepository.deleteAll(userTransactions);
+            databaseWriter.write(() -> rollupService.deleteHistory(chatId, userTransactions));
+            reportCache.invalidate(chatId);
+            bucketIndex.invalidate(chatId);
             return "🗑️ История очищена! Удалено " + userTransactions.size() + " записей";
 
         } catch (Exception e) {
@@ -120,7 +138,9 @@ public class RemoveService {
                     .toList();
 
             if (!transactionsToDelete.isEmpty()) {
-                transactionRepository.deleteAll(transactionsToDelete);
+                databaseWriter.write(() -> rollupService.deleteCategory(chatId, selectedCategory, transactionsToDelete));
+                reportCache.invalidate(chatId);
+                bucketIndex.invalidate(chatId);
             }
 
             String formattedCategory = selectedCategory.substring(0, 1).toUpperCase() + selectedCategory.substring(1);
@@ -149,11 +169,7 @@ public class RemoveService {
      * @return список категорий в нижнем регистре
      */
     private List<String> getUserCategories(Long chatId) {
-        return transactionRepository.findByUserChatId(chatId).stream()
-                .map(Transaction::getCategory)
-                .map(String::toLowerCase)
-                .distinct()
-                .toList();
+        return transactionRepository.findCategories(chatId);
     }
 
     /**
@@ -0,0 +1,138 @@
+package com.lina.finance_tracker_bot.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш готовых текстов отчётов по (chatId, период).
+ * У каждого чата есть версия данных: запись транзакций увеличивает её,
+ * и отчёты, построенные по старой версии, больше не отдаются.
+ * Отчёт также устаревает со сменой дня и по возрасту (границы недели и года сдвигаются со временем).
+ * Общий объём текстов ограничен, при переполнении вытесняются давно не запрошенные отчёты.
+ */
+@Component
+public class ReportCache {
+
+    // Примерный размер записи сверх текста: ключ, запись, узел LinkedHashMap
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final long maxBytes;
+    private final long maxAgeNanos;
+
+    private final ConcurrentMap<Long, Long> versions = new ConcurrentHashMap<>();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes; // под блокировкой entries
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReportCache(@Value("${bot.report-cache.max-kb:4096}") long maxKb,
+                       @Value("${bot.report-cache.max-age-minutes:10}") long maxAgeMinutes) {
+        this.maxBytes = maxKb * 1024;
+        this.maxAgeNanos = TimeUnit.MINUTES.toNanos(maxAgeMinutes);
+    }
+
+    /**
+     * Возвращает отчёт из кэша или строит его и запоминает
+     * @param chatId ID чата пользователя
+     * @param period период отчёта (all, today, week, year)
+     * @param render построение отчёта по БД
+     * @return текст отчёта
+     */
+    public String get(Long chatId, String period, Supplier<String> render) {
+        Key key = new Key(chatId, period);
+        long version = versions.getOrDefault(chatId, 0L);
+        LocalDate today = LocalDate.now();
+        long now = System.nanoTime();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version && entry.day().equals(today)
+                    && now - entry.createdAt() < maxAgeNanos) {
+                hits.incrementAndGet();
+                return entry.text();
+            }
+        }
+        misses.incrementAndGet();
+
+        // версия взята до чтения БД: если запись успела пройти, отчёт сразу окажется устаревшим
+        String text = render.get();
+        put(key, new Entry(version, today, now, text));
+        return text;
+    }
+
+    /**
+     * Помечает отчёты чата устаревшими после изменения его транзакций
+     * @param chatId ID чата пользователя
+     */
+    public void invalidate(Long chatId) {
+        versions.merge(chatId, 1L, Long::sum);
+    }
+
+    private void put(Key key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                cachedBytes -= previous.sizeBytes();
+            }
+            cachedBytes += entry.sizeBytes();
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (cachedBytes > maxBytes && eldest.hasNext()) {
+                cachedBytes -= eldest.next().getValue().sizeBytes();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return количество отчётов в кэше
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return примерный объём кэша в байтах
+     */
+    public long getSizeBytes() {
+        synchronized (entries) {
+            return cachedBytes;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private record Key(Long chatId, String period) {
+    }
+
+    private record Entry(long version, LocalDate day, long createdAt, String text) {
+        long sizeBytes() {
+            return ENTRY_OVERHEAD_BYTES + 2L * text.length();
+        }
+    }
+}
@@ -1,23 +1,50 @@
 package com.lina.finance_tracker_bot.services;
 
-import com.lina.finance_tracker_bot.modelSqlLite.Transaction;
+import com.lina.finance_tracker_bot.modelSqlLite.Money;
 import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.CategoryTotal;
 import com.lina.finance_tracker_bot.repository.TransactionRepository;
+import com.lina.finance_tracker_bot.repository.TransactionRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 /**
- * Сервис для генерации финансовых отчетов
+ * Сервис для генерации финансовых отчетов.
+ * Суммы по категориям считает SQLite (GROUP BY по дневным агрегатам),
+ * в Java приходят только готовые итоги по категориям.
+ * Суммы складываются целыми копейками в long, поэтому итоги и баланс точные.
+ * Готовые тексты отчётов хранятся в {@link ReportCache} до следующей записи транзакций чата.
+ * Отчёт за произвольный период считается по накопленным суммам {@link DailyBucketIndex}.
  */
 @Service
 public class ReportService {
+    public static final String RANGE_COMMAND = "/report from ";
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
     private final TransactionRepository transactionRepository;
+    private final TransactionRollupRepository rollupRepository;
+    private final ReportCache reportCache;
+    private final DailyBucketIndex bucketIndex;
+    private final int topCategories; // сколько крупнейших категорий показывать в разделе отчёта
 
-    public ReportService(TransactionRepository transactionRepository) {
+    public ReportService(TransactionRepository transactionRepository,
+                         TransactionRollupRepository rollupRepository,
+                         ReportCache reportCache,
+                         DailyBucketIndex bucketIndex,
+                         @Value("${bot.report.top-categories:15}") int topCategories) {
         this.transactionRepository = transactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.reportCache = reportCache;
+        this.bucketIndex = bucketIndex;
+        this.topCategories = topCategories;
     }
 
     /**
@@ -35,6 +62,8 @@ public class ReportService {
             return generateWeekReport(chatId);
         } else if (messageText.equals("/report for the year")) {
             return generateYearReport(chatId);
+        } else if (messageText.startsWith(RANGE_COMMAND)) {
+            return handleRangeCommand(chatId, messageText);
         }
         return "❌ Неизвестный тип отчета";
     }
@@ -46,16 +75,20 @@ public class ReportService {
      */
     public String generateGeneralReport(Long chatId) {
         try {
-            List<Transaction> transactions = transactionRepository.findByUserChatId(chatId);
-            if (transactions.isEmpty()) {
-                return "📊 У вас пока нет операций";
-            }
-            return formatReport(transactions, "все время");
+            return reportCache.get(chatId, "all", () -> buildGeneralReport(chatId));
         } catch (Exception e) {
             return "❌ Ошибка формирования отчета: " + e.getMessage();
         }
     }
 
+    private String buildGeneralReport(Long chatId) {
+        List<CategoryTotal> totals = rollupRepository.sumByTypeAndCategory(chatId, Long.MIN_VALUE);
+        if (totals.isEmpty()) {
+            return "📊 У вас пока нет операций";
+        }
+        return formatReport(totals, "все время");
+    }
+
     /**
      * Генерирует отчет за сегодня
      * @param chatId ID чата пользователя
@@ -63,18 +96,22 @@ public class ReportService {
      */
     public String generateTodayReport(Long chatId) {
         try {
-            LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
-            List<Transaction> todayTransactions = transactionRepository.findTodayTransactions(chatId, startOfDay);
-
-            if (todayTransactions.isEmpty()) {
-                return "📊 За сегодня операций нет";
-            }
-            return formatReport(todayTransactions, "сегодня");
+            return reportCache.get(chatId, "today", () -> buildTodayReport(chatId));
         } catch (Exception e) {
             return "❌ Ошибка формирования отчета за сегодня: " + e.getMessage();
         }
     }
 
+    private String buildTodayReport(Long chatId) {
+        long today = LocalDate.now().toEpochDay();
+        List<CategoryTotal> todayTotals = rollupRepository.sumByTypeAndCategory(chatId, today);
+
+        if (todayTotals.isEmpty()) {
+            return "📊 За сегодня операций нет";
+        }
+        return formatReport(todayTotals, "сегодня");
+    }
+
     /**
      * Генерирует отчет за неделю
      * @param chatId ID чата пользователя
@@ -82,33 +119,35 @@ public class ReportService {
      */
     public String generateWeekReport(Long chatId) {
         try {
-            Optional<Transaction> firstTransaction = transactionRepository.findFirstByUserChatIdOrderByDateAsc(chatId);
-            if (firstTransaction.isEmpty()) {
-                return "📊 У вас пока нет операций";
-            }
-
-            long daysWithData = java.time.Duration.between(firstTransaction.get().getDate(), LocalDateTime.now()).toDays() + 1;
-            if (daysWithData < 7) {
-                return "📊 У вас всего " + daysWithData + " дней данных. Недельный отчет будет доступен после 7 дней использования";
-            }
+            return reportCache.get(chatId, "week", () -> buildWeekReport(chatId));
+        } catch (Exception e) {
+            return "❌ Ошибка формирования отчета за неделю: " + e.getMessage();
+        }
+    }
 
-            LocalDateTime weekAgo = LocalDateTime.now().minusWeeks(1);
-            LocalDateTime startDate = firstTransaction.get().getDate().isAfter(weekAgo) ?
-                    firstTransaction.get().getDate() : weekAgo;
+    private String buildWeekReport(Long chatId) {
+        Optional<LocalDateTime> firstDate = transactionRepository.findFirstDateByUserChatId(chatId);
+        if (firstDate.isEmpty()) {
+            return "📊 У вас пока нет операций";
+        }
 
-            List<Transaction> weekTransactions = transactionRepository.findByUserAndDateRange(chatId, startDate, LocalDateTime.now());
+        long daysWithData = java.time.Duration.between(firstDate.get(), LocalDateTime.now()).toDays() + 1;
+        if (daysWithData < 7) {
+            return "📊 У вас всего " + daysWithData + " дней данных. Недельный отчет будет доступен после 7 дней использования";
+        }
 
-            if (weekTransactions.isEmpty()) {
-                return "📊 За неделю операций нет";
-            }
+        LocalDateTime weekAgo = LocalDateTime.now().minusWeeks(1);
+        LocalDateTime startDate = firstDate.get().isAfter(weekAgo) ? firstDate.get() : weekAgo;
 
-            long days = java.time.Duration.between(startDate, LocalDateTime.now()).toDays() + 1;
-            String periodInfo = "неделю (" + days + " дней)";
-            return formatReport(weekTransactions, periodInfo);
+        List<CategoryTotal> weekTotals = sumSince(chatId, startDate);
 
-        } catch (Exception e) {
-            return "❌ Ошибка формирования отчета за неделю: " + e.getMessage();
+        if (weekTotals.isEmpty()) {
+            return "📊 За неделю операций нет";
         }
+
+        long days = java.time.Duration.between(startDate, LocalDateTime.now()).toDays() + 1;
+        String periodInfo = "неделю (" + days + " дней)";
+        return formatReport(weekTotals, periodInfo);
     }
 
     /**
@@ -118,92 +157,233 @@ public class ReportService {
      */
     public String generateYearReport(Long chatId) {
         try {
-            Optional<Transaction> firstTransaction = transactionRepository.findFirstByUserChatIdOrderByDateAsc(chatId);
-            if (firstTransaction.isEmpty()) {
-                return "📊 У вас пока нет операций";
-            }
+            return reportCache.get(chatId, "year", () -> buildYearReport(chatId));
+        } catch (Exception e) {
+            return "❌ Ошибка формирования отчета за год: " + e.getMessage();
+        }
+    }
 
-            LocalDateTime yearAgo = LocalDateTime.now().minusYears(1);
-            LocalDateTime startDate = firstTransaction.get().getDate().isAfter(yearAgo) ?
-                    firstTransaction.get().getDate() : yearAgo;
+    private String buildYearReport(Long chatId) {
+        Optional<LocalDateTime> firstDate = transactionRepository.findFirstDateByUserChatId(chatId);
+        if (firstDate.isEmpty()) {
+            return "📊 У вас пока нет операций";
+        }
 
-            if (firstTransaction.get().getDate().isAfter(yearAgo)) {
-                long daysWithData = java.time.Duration.between(firstTransaction.get().getDate(), LocalDateTime.now()).toDays() + 1;
-                return "📊 У вас всего " + daysWithData + " дней данных. Годовой отчет будет доступен после года использования";
-            }
+        LocalDateTime yearAgo = LocalDateTime.now().minusYears(1);
+        LocalDateTime startDate = firstDate.get().isAfter(yearAgo) ? firstDate.get() : yearAgo;
+
+        if (firstDate.get().isAfter(yearAgo)) {
+            long daysWithData = java.time.Duration.between(firstDate.get(), LocalDateTime.now()).toDays() + 1;
+            return "📊 У вас всего " + daysWithData + " дней данных. Годовой отчет будет доступен после года использования";
+        }
 
-            List<Transaction> yearTransactions = transactionRepository.findByUserAndDateRange(chatId, startDate, LocalDateTime.now());
+        List<CategoryTotal> yearTotals = sumSince(chatId, startDate);
 
-            if (yearTransactions.isEmpty()) {
-                return "📊 За год операций нет";
-            }
+        if (yearTotals.isEmpty()) {
+            return "📊 За год операций нет";
+        }
 
-            long days = java.time.Duration.between(startDate, LocalDateTime.now()).toDays() + 1;
-            String periodInfo = "год (" + days + " дней)";
-            return formatReport(yearTransactions, periodInfo);
+        long days = java.time.Duration.between(startDate, LocalDateTime.now()).toDays() + 1;
+        String periodInfo = "год (" + days + " дней)";
+        return formatReport(yearTotals, periodInfo);
+    }
+
+    /**
+     * Разбирает команду "/report from dd.MM.yyyy to dd.MM.yyyy"
+     * @param chatId ID чата пользователя
+     * @param messageText текст команды
+     * @return отчет за период или сообщение об ошибке формата
+     */
+    private String handleRangeCommand(Long chatId, String messageText) {
+        String[] parts = messageText.substring(RANGE_COMMAND.length()).trim().split("\\s+");
+        if (parts.length != 3 || !parts[1].equals("to")) {
+            return "⚠️ Формат: /report from 01.01.2024 to 31.12.2024";
+        }
+        try {
+            LocalDate from = LocalDate.parse(parts[0], DATE_FORMATTER);
+            LocalDate to = LocalDate.parse(parts[2], DATE_FORMATTER);
+            if (from.isAfter(to)) {
+                return "⚠️ Начало периода позже его конца";
+            }
+            return generateRangeReport(chatId, from, to);
+        } catch (DateTimeParseException e) {
+            return "❌ Неверный формат даты. Используйте дд.мм.гггг (например: 01.01.2024)";
+        }
+    }
 
+    /**
+     * Генерирует отчет за произвольный период: сумма по каждой категории — разность
+     * накопленных сумм на границах периода, поэтому многолетний период стоит как однодневный
+     * @param chatId ID чата пользователя
+     * @param from первый день периода
+     * @param to последний день периода включительно
+     * @return отчет за период или сообщение об отсутствии данных
+     */
+    public String generateRangeReport(Long chatId, LocalDate from, LocalDate to) {
+        try {
+            List<CategoryTotal> totals = bucketIndex.sumRange(chatId, from.toEpochDay(), to.toEpochDay());
+            if (totals.isEmpty()) {
+                return "📊 За этот период операций нет";
+            }
+            return formatReport(totals, "период " + from.format(DATE_FORMATTER) + " – " + to.format(DATE_FORMATTER));
         } catch (Exception e) {
-            return "❌ Ошибка формирования отчета за год: " + e.getMessage();
+            return "❌ Ошибка формирования отчета за период: " + e.getMessage();
         }
     }
 
     /**
-     * Форматирует список транзакций в читаемый отчет
-     * @param transactions список транзакций для отчета
+     * Считает итоги по категориям начиная с указанного момента:
+     * неполный первый день — по транзакциям, остальные дни — по дневным агрегатам
+     * @param chatId ID чата пользователя
+     * @param startDate начало периода
+     * @return итоги по типу и категории (категория может встречаться дважды)
+     */
+    private List<CategoryTotal> sumSince(Long chatId, LocalDateTime startDate) {
+        LocalDateTime nextDay = startDate.toLocalDate().plusDays(1).atStartOfDay();
+        List<CategoryTotal> totals = new ArrayList<>(
+                transactionRepository.sumByTypeAndCategoryInRange(chatId, startDate, nextDay));
+        totals.addAll(rollupRepository.sumByTypeAndCategory(chatId, nextDay.toLocalDate().toEpochDay()));
+        return totals;
+    }
+
+    /**
+     * Форматирует итоги по категориям в читаемый отчет
+     * @param totals суммы по типу и категории за период отчета
      * @param periodName название периода отчета
      * @return форматированный отчет
      */
-    private String formatReport(List<Transaction> transactions, String periodName) {
-        double totalIncome = transactions.stream()
-                .filter(t -> t.getType() == TransactionType.INCOME)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-
-        double totalExpense = transactions.stream()
-                .filter(t -> t.getType() == TransactionType.EXPENSE)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-
-        java.util.Map<String, Double> incomeByCategory = new java.util.HashMap<>();
-        java.util.Map<String, Double> expenseByCategory = new java.util.HashMap<>();
-
-        for (Transaction transaction : transactions) {
-            String category = transaction.getCategory().toLowerCase();
-            double amount = transaction.getAmount();
-
-            if (transaction.getType() == TransactionType.INCOME) {
-                incomeByCategory.put(category, incomeByCategory.getOrDefault(category, 0.0) + amount);
+    String formatReport(List<CategoryTotal> totals, String periodName) {
+        return formatReport(totals, periodName, topCategories);
+    }
+
+    /**
+     * Форматирует итоги за один проход по строкам: категории сливаются в одну запись
+     * на категорию (одна ячейка на доход и расход), затем выводятся по убыванию суммы
+     * @param totals суммы по типу и категории за период отчета
+     * @param periodName название периода отчета
+     * @param topCategories сколько крупнейших категорий показывать в каждом разделе (0 — все),
+     *                      остальные сводятся в строку «Прочее»
+     * @return форматированный отчет
+     */
+    static String formatReport(List<CategoryTotal> totals, String periodName, int topCategories) {
+        long totalIncome = 0;
+        long totalExpense = 0;
+        long operations = 0;
+
+        java.util.Map<String, CategorySum> byCategory = new java.util.HashMap<>();
+        List<CategorySum> income = new ArrayList<>();
+        List<CategorySum> expense = new ArrayList<>();
+
+        for (int i = 0, n = totals.size(); i < n; i++) {
+            CategoryTotal total = totals.get(i);
+            long amount = total.totalMinor();
+            operations += total.operations();
+
+            CategorySum sum = byCategory.get(total.category());
+            if (sum == null) {
+                sum = new CategorySum(total.category());
+                byCategory.put(sum.category, sum);
+            }
+            if (total.type() == TransactionType.INCOME) {
+                totalIncome += amount;
+                if (!sum.hasIncome) {
+                    sum.hasIncome = true;
+                    income.add(sum);
+                }
+                sum.income += amount;
             } else {
-                expenseByCategory.put(category, expenseByCategory.getOrDefault(category, 0.0) + amount);
+                totalExpense += amount;
+                if (!sum.hasExpense) {
+                    sum.hasExpense = true;
+                    expense.add(sum);
+                }
+                sum.expense += amount;
             }
         }
 
-        StringBuilder report = new StringBuilder();
+        int limit = topCategories > 0 ? topCategories : Integer.MAX_VALUE;
+        int lines = Math.min(income.size(), limit) + Math.min(expense.size(), limit);
+        StringBuilder report = new StringBuilder(256 + periodName.length() + lines * 48);
         report.append("📊 Отчет за ").append(periodName).append(":\n\n");
-        report.append("💰 Доходы: ").append(String.format("%.2f", totalIncome)).append(" руб.\n");
-        report.append("💸 Расходы: ").append(String.format("%.2f", totalExpense)).append(" руб.\n");
-        report.append("⚖️ Баланс: ").append(String.format("%.2f", totalIncome - totalExpense)).append(" руб.\n\n");
+        Money.append(report.append("💰 Доходы: "), totalIncome).append(" руб.\n");
+        Money.append(report.append("💸 Расходы: "), totalExpense).append(" руб.\n");
+        Money.append(report.append("⚖️ Баланс: "), totalIncome - totalExpense).append(" руб.\n\n");
 
-        if (!incomeByCategory.isEmpty()) {
+        if (!income.isEmpty()) {
             report.append("📈 Доходы по категориям:\n");
-            for (java.util.Map.Entry<String, Double> entry : incomeByCategory.entrySet()) {
-                String category = entry.getKey();
-                String displayCategory = category.substring(0, 1).toUpperCase() + category.substring(1);
-                report.append("  • ").append(displayCategory).append(": ").append(String.format("%.2f", entry.getValue())).append(" руб.\n");
-            }
+            appendCategories(report, income, true, limit);
             report.append("\n");
         }
 
-        if (!expenseByCategory.isEmpty()) {
+        if (!expense.isEmpty()) {
             report.append("📉 Расходы по категориям:\n");
-            for (java.util.Map.Entry<String, Double> entry : expenseByCategory.entrySet()) {
-                String category = entry.getKey();
-                String displayCategory = category.substring(0, 1).toUpperCase() + category.substring(1);
-                report.append("  • ").append(displayCategory).append(": ").append(String.format("%.2f", entry.getValue())).append(" руб.\n");
-            }
+            appendCategories(report, expense, false, limit);
         }
 
-        report.append("\nВсего операций: ").append(transactions.size());
+        report.append("\nВсего операций: ").append(operations);
         return report.toString();
     }
-}
\ No newline at end of file
+
+    private static void appendCategories(StringBuilder report, List<CategorySum> sums, boolean income, int limit) {
+        java.util.Comparator<CategorySum> byAmountDesc = (a, b) -> {
+            int cmp = Long.compare(b.amount(income), a.amount(income));
+            return cmp != 0 ? cmp : a.category.compareTo(b.category);
+        };
+
+        List<CategorySum> shown = limit < sums.size() ? top(sums, limit, byAmountDesc) : sums;
+        shown.sort(byAmountDesc);
+
+        long shownTotal = 0;
+        for (int i = 0, n = shown.size(); i < n; i++) {
+            CategorySum sum = shown.get(i);
+            long amount = sum.amount(income);
+            shownTotal += amount;
+            String category = sum.category;
+            report.append("  • ").append(Character.toUpperCase(category.charAt(0))).append(category, 1, category.length())
+                    .append(": ");
+            Money.append(report, amount).append(" руб.\n");
+        }
+
+        if (shown.size() < sums.size()) {
+            long restTotal = 0;
+            for (int i = 0, n = sums.size(); i < n; i++) {
+                restTotal += sums.get(i).amount(income);
+            }
+            report.append("  • Прочее (").append(sums.size() - shown.size()).append(" кат.): ");
+            Money.append(report, restTotal - shownTotal).append(" руб.\n");
+        }
+    }
+
+    /**
+     * Отбирает limit первых по порядку order без полной сортировки: куча из limit элементов
+     */
+    private static List<CategorySum> top(List<CategorySum> sums, int limit, java.util.Comparator<CategorySum> order) {
+        java.util.PriorityQueue<CategorySum> heap = new java.util.PriorityQueue<>(limit + 1, order.reversed());
+        for (int i = 0, n = sums.size(); i < n; i++) {
+            heap.add(sums.get(i));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        return new ArrayList<>(heap);
+    }
+
+    /**
+     * Суммы одной категории в копейках за период
+     */
+    private static final class CategorySum {
+        private final String category;
+        private long income;
+        private long expense;
+        private boolean hasIncome;
+        private boolean hasExpense;
+
+        CategorySum(String category) {
+            this.category = category;
+        }
+
+        long amount(boolean income) {
+            return income ? this.income : this.expense;
+        }
+    }
+}
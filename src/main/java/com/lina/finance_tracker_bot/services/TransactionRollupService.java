@@ -0,0 +1,171 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.Money;
+import com.lina.finance_tracker_bot.modelSqlLite.Transaction;
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.TransactionExportRow;
+import com.lina.finance_tracker_bot.repository.TransactionRepository;
+import com.lina.finance_tracker_bot.repository.TransactionRollupRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сервис записи транзакций вместе с дневными агрегатами.
+ * Транзакция и её агрегат меняются в одной транзакции БД,
+ * поэтому отчёты по агрегатам всегда совпадают с историей.
+ */
+@Service
+public class TransactionRollupService {
+
+    // День транзакции как LocalDate.toEpochDay(): Hibernate пишет LocalDateTime миллисекундами Timestamp
+    // в часовом поясе JVM, 'localtime' SQLite переводит их обратно в поясе процесса (он же пояс JVM);
+    // строки, записанные текстом, разбираются как есть
+    private static final String EPOCH_DAY_SQL = "CAST(julianday(CASE WHEN typeof(t.date) = 'integer' " +
+            "THEN date(t.date / 1000, 'unixepoch', 'localtime') ELSE date(t.date) END) - 2440587.5 AS INTEGER)";
+
+    private final TransactionRepository transactionRepository; // Репозиторий транзакций
+    private final TransactionRollupRepository rollupRepository; // Репозиторий дневных агрегатов
+    private final JdbcTemplate jdbcTemplate; // Пакетная вставка при импорте и заполнение агрегатов
+
+    /**
+     * Конструктор сервиса.
+     *
+     * @param transactionRepository репозиторий транзакций
+     * @param rollupRepository репозиторий дневных агрегатов
+     * @param jdbcTemplate JDBC-доступ для пакетной вставки и заполнения агрегатов
+     */
+    public TransactionRollupService(TransactionRepository transactionRepository,
+                                    TransactionRollupRepository rollupRepository,
+                                    JdbcTemplate jdbcTemplate) {
+        this.transactionRepository = transactionRepository;
+        this.rollupRepository = rollupRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Сохраняет транзакцию и добавляет её сумму в агрегат дня.
+     *
+     * @param chatId ID чата пользователя (пользователь транзакции может быть незагруженной ссылкой)
+     * @param transaction новая транзакция с нормализованной категорией
+     * @return сохранённая транзакция
+     */
+    @Transactional
+    public Transaction save(Long chatId, Transaction transaction) {
+        Transaction saved = transactionRepository.save(transaction);
+        rollupRepository.increment(
+                chatId,
+                saved.getType().name(),
+                saved.getCategory().toLowerCase(),
+                saved.getDate().toLocalDate().toEpochDay(),
+                saved.getAmountMinor(),
+                1);
+        return saved;
+    }
+
+    /**
+     * Вставляет часть импортируемой истории одним пакетом JDBC и добавляет её в дневные агрегаты:
+     * строки сначала складываются по (тип, категория, день), поэтому каждый агрегат
+     * обновляется один раз на пакет, а не на каждую строку.
+     *
+     * @param userId ID пользователя в таблице users
+     * @param chatId ID чата пользователя
+     * @param rows проверенные строки с категорией в нижнем регистре
+     */
+    @Transactional
+    public void importChunk(Long userId, Long chatId, List<TransactionExportRow> rows) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO transactions (amount, amount_minor, category, type, date, user_id) VALUES (?, ?, ?, ?, ?, ?)",
+                rows, rows.size(), (ps, row) -> {
+                    ps.setDouble(1, Money.toAmount(row.amountMinor()));
+                    ps.setLong(2, row.amountMinor());
+                    ps.setString(3, row.category());
+                    ps.setString(4, row.type().name());
+                    // так же, как Hibernate пишет LocalDateTime
+                    ps.setTimestamp(5, Timestamp.valueOf(row.date()));
+                    ps.setLong(6, userId);
+                });
+
+        Map<RollupKey, long[]> rollups = new HashMap<>();
+        for (TransactionExportRow row : rows) {
+            long[] sum = rollups.computeIfAbsent(
+                    new RollupKey(row.type(), row.category(), row.date().toLocalDate().toEpochDay()), k -> new long[2]);
+            sum[0] += row.amountMinor();
+            sum[1]++;
+        }
+        for (Map.Entry<RollupKey, long[]> entry : rollups.entrySet()) {
+            RollupKey key = entry.getKey();
+            rollupRepository.increment(chatId, key.type().name(), key.category(), key.day(),
+                    entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Удаляет всю историю пользователя вместе с агрегатами.
+     *
+     * @param chatId ID чата пользователя
+     * @param transactions транзакции пользователя
+     */
+    @Transactional
+    public void deleteHistory(Long chatId, List<Transaction> transactions) {
+        transactionRepository.deleteAll(transactions);
+        rollupRepository.deleteByChatId(chatId);
+    }
+
+    /**
+     * Удаляет транзакции категории вместе с её агрегатами.
+     *
+     * @param chatId ID чата пользователя
+     * @param category категория в нижнем регистре
+     * @param transactions транзакции этой категории
+     */
+    @Transactional
+    public void deleteCategory(Long chatId, String category, List<Transaction> transactions) {
+        transactionRepository.deleteAll(transactions);
+        rollupRepository.deleteByChatIdAndCategory(chatId, category.toLowerCase());
+    }
+
+    /**
+     * Заполняет агрегаты по существующей истории, если таблица агрегатов ещё пуста
+     * (первый запуск после появления агрегатов или восстановление из бэкапа).
+     * Суммы считает SQLite одним INSERT ... SELECT с GROUP BY, история в память не загружается.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (rollupRepository.count() > 0 || transactionRepository.count() == 0) {
+            return;
+        }
+        // категории агрегатов приводятся String.toLowerCase, а lower() в SQLite меняет только латиницу:
+        // старые категории не в нижнем регистре переводятся явным CASE (обычно их нет совсем)
+        StringBuilder category = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (String original : jdbcTemplate.queryForList("SELECT DISTINCT category FROM transactions", String.class)) {
+            if (original != null && !original.equals(original.toLowerCase())) {
+                category.append(" WHEN ? THEN ?");
+                args.add(original);
+                args.add(original.toLowerCase());
+            }
+        }
+        String categorySql = category.isEmpty() ? "t.category" : "CASE t.category" + category + " ELSE t.category END";
+
+        int rows = jdbcTemplate.update(
+                "INSERT INTO transaction_rollups (chat_id, type, category, day, total_minor, operations) " +
+                        "SELECT u.chat_id, t.type, " + categorySql + ", " + EPOCH_DAY_SQL + ", SUM(t.amount_minor), COUNT(*) " +
+                        "FROM transactions t JOIN users u ON u.id = t.user_id " +
+                        "GROUP BY 1, 2, 3, 4",
+                args.toArray());
+        System.out.println("📊 Агрегаты отчётов построены по существующей истории: " + rows + " строк");
+    }
+
+    private record RollupKey(TransactionType type, String category, long day) {
+    }
+}
@@ -3,45 +3,81 @@ package com.lina.finance_tracker_bot.services;
 import com.lina.finance_tracker_bot.modelSqlLite.User;
 import com.lina.finance_tracker_bot.repository.UserRepository;
 import com.lina.finance_tracker_bot.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Сервис для работы с информацией о пользователях финансового трекера.
  * Обеспечивает получение и создание пользователей, а также работу с их категориями транзакций.
+ * Пользователь, однажды найденный по ID чата, больше не меняется, поэтому соответствие
+ * chatId → id пользователя хранится в ограниченном LRU-кэше и повторный SELECT не нужен.
  */
 @Service
 public class UserInfoService {
 
     private final UserRepository userRepository; // Репозиторий для работы с пользователями
     private final TransactionRepository transactionRepository; // Репозиторий для работы с транзакциями
+    private final Map<Long, Long> userIds; // chatId → id пользователя, в порядке последнего обращения
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
 
     /**
      * Конструктор сервиса.
      *
      * @param userRepository репозиторий пользователей
      * @param transactionRepository репозиторий транзакций
+     * @param cacheSize сколько пользователей держать в кэше
      */
-    public UserInfoService(UserRepository userRepository, TransactionRepository transactionRepository) {
+    public UserInfoService(UserRepository userRepository,
+                           TransactionRepository transactionRepository,
+                           @Value("${bot.user-cache.max-size:10000}") int cacheSize) {
         this.userRepository = userRepository;
         this.transactionRepository = transactionRepository;
+        this.userIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > cacheSize;
+            }
+        };
     }
 
     /**
      * Получает существующего пользователя по ID чата или создаёт нового.
+     * Для пользователя из кэша возвращается ссылка без загрузки из БД
+     * (годится для привязки транзакций и уведомлений, поля при чтении подгрузятся лениво).
      *
      * @param chatId ID чата пользователя в Telegram
      * @param username имя пользователя в Telegram
      * @return существующий или вновь созданный объект пользователя
      */
     public User getOrCreateUser(Long chatId, String username) {
+        Long userId;
+        synchronized (userIds) {
+            userId = userIds.get(chatId);
+        }
+        if (userId != null) {
+            cacheHits.incrementAndGet();
+            return userRepository.getReferenceById(userId);
+        }
+        cacheMisses.incrementAndGet();
+
         Optional<User> existingUser = userRepository.findByChatId(chatId);
-        if (existingUser.isPresent()) {
-            return existingUser.get();
+        if (existingUser.isEmpty()) {
+            // вставка без ошибки при гонке: одновременные запросы получат одну и ту же строку
+            userRepository.insertIfAbsent(chatId, username);
+            existingUser = userRepository.findByChatId(chatId);
+        }
+        User user = existingUser.orElseThrow();
+        synchronized (userIds) {
+            userIds.put(chatId, user.getId());
         }
-        User newUser = new User(chatId, username);
-        return userRepository.save(newUser);
+        return user;
     }
 
     /**
@@ -52,10 +88,29 @@ public class UserInfoService {
      * @return список уникальных категорий транзакций пользователя
      */
     public List<String> getUserCategories(Long chatId) {
-        return transactionRepository.findByUserChatId(chatId).stream()
-                .map(transaction -> transaction.getCategory())
-                .map(String::toLowerCase)
-                .distinct()
-                .toList();
+        return transactionRepository.findCategories(chatId);
+    }
+
+    /**
+     * @return количество пользователей в кэше
+     */
+    public int getCacheSize() {
+        synchronized (userIds) {
+            return userIds.size();
+        }
+    }
+
+    /**
+     * @return сколько раз пользователь найден в кэше
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return сколько раз пользователя пришлось искать в БД
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
     }
 }
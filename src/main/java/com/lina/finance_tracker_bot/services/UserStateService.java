@@ -140,6 +140,20 @@ public class UserStateService {
         }
     }
 
+    /* ------------------ Metrics ------------------ */
+
+    public int getStateCount() {
+        return states.size();
+    }
+
+    public int getAwaitingCategoryDeletionCount() {
+        return awaitingCategoryDeletion.size();
+    }
+
+    public int getAwaitingNotificationDeletionCount() {
+        return awaitingNotificationDeletion.size();
+    }
+
     public void shutdown() {
         scheduler.shutdownNow();
     }
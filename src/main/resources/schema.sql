@@ -0,0 +1,7 @@
+-- Один пользователь на чат: нужен для INSERT ... ON CONFLICT в UserRepository
+CREATE UNIQUE INDEX IF NOT EXISTS ux_users_chat_id ON users (chat_id);
+-- Ключ дневных агрегатов: нужен для INSERT ... ON CONFLICT в TransactionRollupRepository
+CREATE UNIQUE INDEX IF NOT EXISTS ux_rollups_key ON transaction_rollups (chat_id, type, category, day);
+-- Суммы в копейках: перенос старых строк, где amount_minor/total_minor ещё не заполнены
+UPDATE transactions SET amount_minor = CAST(ROUND(amount * 100) AS INTEGER) WHERE amount_minor IS NULL;
+UPDATE transaction_rollups SET total_minor = CAST(ROUND(total * 100) AS INTEGER) WHERE total_minor IS NULL;
@@ -0,0 +1,104 @@
+package com.lina.finance_tracker_bot.bot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * HTTP-точка webhook: проверка секрета и ответ 503 при полной очереди приёма
+ */
+class TelegramWebhookControllerTests {
+
+    private static final String SECRET = "test-secret";
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final List<Update> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch sinkEntered = new CountDownLatch(1);
+    private final CountDownLatch releaseSink = new CountDownLatch(1);
+    private WebhookUpdateReceiver receiver;
+
+    @AfterEach
+    void shutdown() {
+        releaseSink.countDown();
+        if (receiver != null) {
+            receiver.shutdown();
+        }
+    }
+
+    @Test
+    void acceptsUpdateWithSecret() throws Exception {
+        MockMvc mockMvc = mockMvc(1000, false);
+
+        mockMvc.perform(update(1).header(SECRET_HEADER, SECRET)).andExpect(status().isOk());
+
+        receiver.shutdown(); // дожидается разбора очереди
+        assertEquals(1, received.size());
+        assertEquals(1, received.get(0).getUpdateId());
+    }
+
+    @Test
+    void rejectsUpdateWithoutOrWithWrongSecret() throws Exception {
+        MockMvc mockMvc = mockMvc(1000, false);
+
+        mockMvc.perform(update(1)).andExpect(status().isUnauthorized());
+        mockMvc.perform(update(2).header(SECRET_HEADER, "wrong")).andExpect(status().isUnauthorized());
+
+        receiver.shutdown();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void answers503WhenQueueIsFull() throws Exception {
+        MockMvc mockMvc = mockMvc(1, true);
+
+        // первое обновление забирает поток приёма и застревает в обработке
+        mockMvc.perform(update(1).header(SECRET_HEADER, SECRET)).andExpect(status().isOk());
+        assertTrue(sinkEntered.await(5, TimeUnit.SECONDS));
+        // второе занимает единственное место в очереди, третьему места нет
+        mockMvc.perform(update(2).header(SECRET_HEADER, SECRET)).andExpect(status().isOk());
+        mockMvc.perform(update(3).header(SECRET_HEADER, SECRET)).andExpect(status().isServiceUnavailable());
+        assertEquals(1, receiver.getRejectedCount());
+
+        releaseSink.countDown();
+        receiver.shutdown();
+        assertEquals(List.of(1, 2), received.stream().map(Update::getUpdateId).toList());
+    }
+
+    private MockMvc mockMvc(int capacity, boolean blockSink) {
+        receiver = new WebhookUpdateReceiver(update -> {
+            received.add(update);
+            sinkEntered.countDown();
+            if (blockSink) {
+                try {
+                    releaseSink.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, capacity);
+        return MockMvcBuilders.standaloneSetup(new TelegramWebhookController(receiver, SECRET))
+                .addPlaceholderValue("bot.webhook.path", "/telegram/webhook")
+                .build();
+    }
+
+    private static MockHttpServletRequestBuilder update(int updateId) {
+        return post("/telegram/webhook")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId +
+                        ",\"date\":1700000000,\"chat\":{\"id\":42,\"type\":\"private\"},\"text\":\"/start\"}}");
+    }
+}
@@ -0,0 +1,162 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionRollup;
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.CategoryTotal;
+import com.lina.finance_tracker_bot.repository.TransactionRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Суммы за период по накопленным суммам дней: границы периода относительно дней с операциями,
+ * дописывание новых дней и сброс индекса при операции задним числом
+ */
+class DailyBucketIndexTests {
+
+    private static final long CHAT_ID = 42L;
+
+    private final TransactionRollupRepository rollupRepository = mock(TransactionRollupRepository.class);
+    private final List<TransactionRollup> rollups = new ArrayList<>();
+    private DailyBucketIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // еда: дни 10, 12 и 15; зарплата: день 12
+        rollups.add(rollup(TransactionType.EXPENSE, "еда", 10, 100, 1));
+        rollups.add(rollup(TransactionType.EXPENSE, "еда", 12, 200, 2));
+        rollups.add(rollup(TransactionType.INCOME, "зарплата", 12, 1000, 1));
+        rollups.add(rollup(TransactionType.EXPENSE, "еда", 15, 400, 1));
+        when(rollupRepository.findByChatIdOrderByDayAsc(CHAT_ID)).thenAnswer(invocation -> List.copyOf(rollups));
+        index = new DailyBucketIndex(rollupRepository, 10);
+    }
+
+    @Test
+    void sumsWholeHistory() {
+        assertEquals(Set.of(food(700, 4), salary(1000, 1)), sum(0, 100));
+    }
+
+    @Test
+    void periodOutsideHistoryIsEmpty() {
+        assertTrue(sum(0, 9).isEmpty());
+        assertTrue(sum(16, 30).isEmpty());
+    }
+
+    @Test
+    void periodBetweenDaysIsEmpty() {
+        assertTrue(sum(11, 11).isEmpty());
+        assertTrue(sum(13, 14).isEmpty());
+    }
+
+    @Test
+    void singleDay() {
+        assertEquals(Set.of(food(200, 2), salary(1000, 1)), sum(12, 12));
+        assertEquals(Set.of(food(100, 1)), sum(10, 10));
+        assertEquals(Set.of(food(400, 1)), sum(15, 15));
+    }
+
+    @Test
+    void boundariesAreInclusive() {
+        assertEquals(Set.of(food(300, 3), salary(1000, 1)), sum(10, 12));
+        assertEquals(Set.of(food(600, 3), salary(1000, 1)), sum(12, 15));
+    }
+
+    @Test
+    void boundariesBetweenOrOutsideDays() {
+        assertEquals(Set.of(food(200, 2), salary(1000, 1)), sum(11, 14));
+        assertEquals(Set.of(food(100, 1)), sum(5, 11));
+        assertEquals(Set.of(food(400, 1)), sum(13, 40));
+    }
+
+    @Test
+    void addAppendsAfterLastDay() {
+        sum(0, 100); // строит индекс
+        index.add(CHAT_ID, TransactionType.EXPENSE, "еда", 20, 50);
+
+        assertEquals(Set.of(food(50, 1)), sum(16, 20));
+        assertEquals(Set.of(food(750, 5), salary(1000, 1)), sum(0, 100));
+        verify(rollupRepository, times(1)).findByChatIdOrderByDayAsc(CHAT_ID);
+    }
+
+    @Test
+    void addToLastDayAndNewCategory() {
+        sum(0, 100);
+        index.add(CHAT_ID, TransactionType.EXPENSE, "еда", 15, 10);
+        index.add(CHAT_ID, TransactionType.EXPENSE, "кафе", 3, 70);
+
+        assertEquals(Set.of(food(410, 2)), sum(15, 15));
+        assertEquals(Set.of(new CategoryTotal(TransactionType.EXPENSE, "кафе", 70L, 1L)), sum(0, 5));
+        verify(rollupRepository, times(1)).findByChatIdOrderByDayAsc(CHAT_ID);
+    }
+
+    @Test
+    void addBeforeLastDayRebuildsIndex() {
+        sum(0, 100);
+        // операция задним числом: в БД она уже попала в агрегаты
+        rollups.add(rollup(TransactionType.EXPENSE, "еда", 11, 30, 1));
+        rollups.sort((a, b) -> Long.compare(a.getDay(), b.getDay()));
+        index.add(CHAT_ID, TransactionType.EXPENSE, "еда", 11, 30);
+
+        assertEquals(0, index.getSize());
+        assertEquals(Set.of(food(30, 1)), sum(11, 11));
+        assertEquals(Set.of(food(730, 5), salary(1000, 1)), sum(0, 100));
+        verify(rollupRepository, times(2)).findByChatIdOrderByDayAsc(CHAT_ID);
+    }
+
+    @Test
+    void addWithoutIndexDoesNotBuildIt() {
+        index.add(CHAT_ID, TransactionType.EXPENSE, "еда", 20, 50);
+
+        assertEquals(0, index.getSize());
+        verify(rollupRepository, times(0)).findByChatIdOrderByDayAsc(CHAT_ID);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedChat() {
+        index = new DailyBucketIndex(rollupRepository, 1);
+        when(rollupRepository.findByChatIdOrderByDayAsc(7L)).thenReturn(List.of());
+
+        sum(0, 100);
+        index.sumRange(7L, 0, 100);
+        assertEquals(1, index.getSize());
+        // индекс первого чата вытеснен и строится заново
+        assertEquals(Set.of(food(700, 4), salary(1000, 1)), sum(0, 100));
+        verify(rollupRepository, times(2)).findByChatIdOrderByDayAsc(CHAT_ID);
+    }
+
+    private Set<CategoryTotal> sum(long fromDay, long toDay) {
+        List<CategoryTotal> totals = index.sumRange(CHAT_ID, fromDay, toDay);
+        Set<CategoryTotal> unique = Set.copyOf(totals);
+        assertEquals(totals.size(), unique.size());
+        return unique;
+    }
+
+    private static CategoryTotal food(long totalMinor, long operations) {
+        return new CategoryTotal(TransactionType.EXPENSE, "еда", totalMinor, operations);
+    }
+
+    private static CategoryTotal salary(long totalMinor, long operations) {
+        return new CategoryTotal(TransactionType.INCOME, "зарплата", totalMinor, operations);
+    }
+
+    private static TransactionRollup rollup(TransactionType type, String category, long day, long totalMinor, long operations) {
+        TransactionRollup rollup = new TransactionRollup();
+        rollup.setChatId(CHAT_ID);
+        rollup.setType(type);
+        rollup.setCategory(category);
+        rollup.setDay(day);
+        rollup.setTotalMinor(totalMinor);
+        rollup.setOperations(operations);
+        return rollup;
+    }
+}
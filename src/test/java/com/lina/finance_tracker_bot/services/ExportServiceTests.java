@@ -0,0 +1,48 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.TransactionExportRow;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Формат строк выгрузки CSV: кавычки только там, где они нужны, и сумма с точкой в любой локали
+ */
+class ExportServiceTests {
+
+    @Test
+    void quotesOnlyWhenNeeded() {
+        assertEquals("еда", quoted("еда"));
+        assertEquals("\"кафе, бар\"", quoted("кафе, бар"));
+        assertEquals("\"с \"\"кавычками\"\"\"", quoted("с \"кавычками\""));
+        assertEquals("\"две\nстроки\"", quoted("две\nстроки"));
+        assertEquals("\"возврат\rкаретки\"", quoted("возврат\rкаретки"));
+    }
+
+    @Test
+    void formatsRow() {
+        StringBuilder line = new StringBuilder();
+        ExportService.appendRow(line, new TransactionExportRow(
+                LocalDateTime.of(2024, 1, 31, 12, 0), TransactionType.EXPENSE, "кафе, бар", 123405L));
+
+        assertEquals("2024-01-31T12:00,EXPENSE,\"кафе, бар\",1234.05\n", line.toString());
+    }
+
+    @Test
+    void formatsSmallAmounts() {
+        StringBuilder line = new StringBuilder();
+        ExportService.appendRow(line, new TransactionExportRow(
+                LocalDateTime.of(2024, 1, 31, 0, 0), TransactionType.INCOME, "еда", 7L));
+
+        assertEquals("2024-01-31T00:00,INCOME,еда,0.07\n", line.toString());
+    }
+
+    private static String quoted(String value) {
+        StringBuilder line = new StringBuilder();
+        ExportService.appendQuoted(line, value);
+        return line.toString();
+    }
+}
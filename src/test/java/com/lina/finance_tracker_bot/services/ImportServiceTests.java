@@ -0,0 +1,188 @@
+package com.lina.finance_tracker_bot.services;
+
+import com.lina.finance_tracker_bot.modelSqlLite.TransactionType;
+import com.lina.finance_tracker_bot.repository.TransactionExportRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Разбор CSV при импорте: поля, даты, суммы, заголовок и BOM, записи из нескольких строк
+ * и обратный путь выгрузка → импорт
+ */
+class ImportServiceTests {
+
+    private static final long CHAT_ID = 42L;
+    private static final long USER_ID = 7L;
+
+    private final List<String> fields = new ArrayList<>();
+    private final List<TransactionExportRow> written = new ArrayList<>();
+    private ImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        DatabaseWriter databaseWriter = mock(DatabaseWriter.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(databaseWriter).write(any(Runnable.class));
+        TransactionRollupService rollupService = mock(TransactionRollupService.class);
+        doAnswer(invocation -> {
+            written.addAll(invocation.<List<TransactionExportRow>>getArgument(2));
+            return null;
+        }).when(rollupService).importChunk(anyLong(), anyLong(), anyList());
+
+        // часть по 2 строки, чтобы файл записывался несколькими пакетами
+        importService = new ImportService(null, null, rollupService, databaseWriter, null, null,
+                new SimpleMeterRegistry(), 2, 100);
+    }
+
+    @Test
+    void parsesDateFormats() {
+        assertEquals(LocalDateTime.of(2024, 1, 31, 12, 30),
+                ImportService.parseRow("2024-01-31T12:30,expense,еда,1", fields).date());
+        assertEquals(LocalDateTime.of(2024, 1, 31, 0, 0),
+                ImportService.parseRow("2024-01-31,expense,еда,1", fields).date());
+        assertEquals(LocalDateTime.of(2024, 1, 31, 0, 0),
+                ImportService.parseRow("31.01.2024,expense,еда,1", fields).date());
+        assertNull(ImportService.parseRow("31.13.2024,expense,еда,1", fields));
+        assertNull(ImportService.parseRow("вчера,expense,еда,1", fields));
+    }
+
+    @Test
+    void parsesTypesCategoriesAndAmounts() {
+        TransactionExportRow row = ImportService.parseRow("31.01.2024, Доход , Зарплата ,1500.5", fields);
+        assertEquals(TransactionType.INCOME, row.type());
+        assertEquals("зарплата", row.category());
+        assertEquals(150050L, row.amountMinor());
+
+        assertEquals(TransactionType.EXPENSE, ImportService.parseRow("31.01.2024,EXPENSE,еда,1", fields).type());
+        // десятичная запятая — только в кавычках, иначе это разделитель полей
+        assertEquals(1250L, ImportService.parseRow("31.01.2024,expense,еда,\"12,50\"", fields).amountMinor());
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,12,50", fields));
+        // округление до копейки
+        assertEquals(1001L, ImportService.parseRow("31.01.2024,expense,еда,10.005", fields).amountMinor());
+    }
+
+    @Test
+    void unquotesFields() {
+        assertEquals("кафе, бар", ImportService.parseRow("31.01.2024,expense,\"Кафе, бар\",1", fields).category());
+        assertEquals("с \"кавычками\"",
+                ImportService.parseRow("31.01.2024,expense,\"с \"\"кавычками\"\"\",1", fields).category());
+        assertEquals("две\nстроки", ImportService.parseRow("31.01.2024,expense,\"две\nстроки\",1", fields).category());
+    }
+
+    @Test
+    void rejectsInvalidRows() {
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,0", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,-5", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,NaN", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,Infinity", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,1e300", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,сто", fields));
+        assertNull(ImportService.parseRow("31.01.2024,transfer,еда,1", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense, ,1", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда", fields));
+        assertNull(ImportService.parseRow("31.01.2024,expense,еда,1,лишнее", fields));
+    }
+
+    @Test
+    void detectsOpenQuotes() {
+        assertTrue(ImportService.hasOpenQuote("31.01.2024,expense,\"две"));
+        assertFalse(ImportService.hasOpenQuote("31.01.2024,expense,\"с \"\"кавычками\"\"\",1"));
+        assertFalse(ImportService.hasOpenQuote("31.01.2024,expense,еда,1"));
+    }
+
+    @Test
+    void skipsBomHeaderAndBlankLinesAndReportsBadLines() throws IOException {
+        ImportService.ImportResult result = importCsv("\uFEFFdate,type,category,amount\n" +
+                "31.01.2024,expense,еда,100\n" +
+                "\n" +
+                "31.01.2024,expense,еда,ноль\n" +
+                "01.02.2024,income,зарплата,5000\n" +
+                "2024-02-02,expense,кафе,250.75\n");
+
+        assertEquals(3, result.imported());
+        assertEquals(1, result.rejected());
+        assertEquals(List.of(4L), result.errorLines());
+        assertEquals(List.of(
+                new TransactionExportRow(LocalDateTime.of(2024, 1, 31, 0, 0), TransactionType.EXPENSE, "еда", 10000L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 1, 0, 0), TransactionType.INCOME, "зарплата", 500000L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 2, 0, 0), TransactionType.EXPENSE, "кафе", 25075L)),
+                written);
+    }
+
+    @Test
+    void headerIsOnlySkippedOnFirstLine() throws IOException {
+        ImportService.ImportResult result = importCsv("31.01.2024,expense,еда,100\ndate,type,category,amount\n");
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.rejected());
+        assertEquals(List.of(2L), result.errorLines());
+    }
+
+    @Test
+    void joinsQuotedFieldSpanningLines() throws IOException {
+        ImportService.ImportResult result = importCsv("31.01.2024,expense,\"первая\nвторая\",100\n" +
+                "31.01.2024,expense,сломанная,\n" +
+                "01.02.2024,expense,еда,1\n");
+
+        assertEquals(2, result.imported());
+        // номер строки — начало записи, с учётом строк внутри кавычек
+        assertEquals(List.of(3L), result.errorLines());
+        assertEquals("первая\nвторая", written.get(0).category());
+    }
+
+    @Test
+    void stopsAtRowLimit() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            csv.append("31.01.2024,expense,еда,1\n");
+        }
+        ImportService.ImportResult result = importCsv(csv.toString());
+
+        assertEquals(100, result.imported());
+        assertTrue(result.truncated());
+    }
+
+    @Test
+    void exportedRowsImportBackUnchanged() throws IOException {
+        List<TransactionExportRow> rows = List.of(
+                new TransactionExportRow(LocalDateTime.of(2024, 1, 31, 12, 34, 56), TransactionType.EXPENSE, "еда", 1L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 1, 0, 0), TransactionType.INCOME, "зарплата", 12345678900L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 2, 9, 5), TransactionType.EXPENSE, "кафе, бар", 50L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 3, 10, 0), TransactionType.EXPENSE, "с \"кавычками\"", 100L),
+                new TransactionExportRow(LocalDateTime.of(2024, 2, 4, 23, 59), TransactionType.EXPENSE, "две\nстроки", 99L));
+
+        StringBuilder csv = new StringBuilder("date,type,category,amount\n");
+        for (TransactionExportRow row : rows) {
+            ExportService.appendRow(csv, row);
+        }
+        ImportService.ImportResult result = importCsv(csv.toString());
+
+        assertEquals(rows.size(), result.imported());
+        assertEquals(0, result.rejected());
+        assertEquals(rows, written);
+    }
+
+    private ImportService.ImportResult importCsv(String csv) throws IOException {
+        return importService.importRows(CHAT_ID, USER_ID, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+}